@@ -0,0 +1,104 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.xmljson;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A thread-safe pool of fixed-size byte buffers ("segments"), heap or direct, used to build the output of
+ * {@link XmlJsonDataFormat} without growing and copying arrays. See {@link SegmentedOutputStream}.
+ * <p/>
+ * Segments are allocated on demand; released segments are kept for reuse up to a maximum count, beyond which they
+ * are left to the garbage collector.
+ * @author Raul Kripalani
+ */
+public class BufferPool {
+
+	public static final int DEFAULT_SEGMENT_SIZE = 8192;
+	public static final int DEFAULT_MAX_POOLED_SEGMENTS = 1024;
+
+	private final Queue<ByteBuffer> segments = new ConcurrentLinkedQueue<ByteBuffer>();
+	private final AtomicInteger pooled = new AtomicInteger();
+	private final int segmentSize;
+	private final int maxPooledSegments;
+	private final boolean direct;
+
+	public BufferPool() {
+		this(DEFAULT_SEGMENT_SIZE, DEFAULT_MAX_POOLED_SEGMENTS, false);
+	}
+
+	public BufferPool(int segmentSize, int maxPooledSegments, boolean direct) {
+		if (segmentSize <= 0) {
+			throw new IllegalArgumentException("Segment size must be positive, was: " + segmentSize);
+		}
+		this.segmentSize = segmentSize;
+		this.maxPooledSegments = maxPooledSegments;
+		this.direct = direct;
+	}
+
+	/**
+	 * Takes a cleared segment from the pool, allocating a new one if the pool is empty
+	 * @return the segment
+	 */
+	public ByteBuffer acquire() {
+		ByteBuffer segment = segments.poll();
+		if (segment == null) {
+			return direct ? ByteBuffer.allocateDirect(segmentSize) : ByteBuffer.allocate(segmentSize);
+		}
+		pooled.decrementAndGet();
+		segment.clear();
+		return segment;
+	}
+
+	/**
+	 * Gives a segment back to the pool. The caller must not use it afterwards
+	 * @param segment the segment, as returned by {@link #acquire()}
+	 */
+	public void release(ByteBuffer segment) {
+		if (segment.capacity() != segmentSize || segment.isDirect() != direct) {
+			return;
+		}
+		if (pooled.incrementAndGet() <= maxPooledSegments) {
+			segments.offer(segment);
+		} else {
+			pooled.decrementAndGet();
+		}
+	}
+
+	public int getSegmentSize() {
+		return segmentSize;
+	}
+
+	public int getMaxPooledSegments() {
+		return maxPooledSegments;
+	}
+
+	public boolean isDirect() {
+		return direct;
+	}
+
+	/**
+	 * @return the number of segments currently available for reuse
+	 */
+	public int getPooledSegments() {
+		return pooled.get();
+	}
+
+}
@@ -0,0 +1,113 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.xmljson;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.xml.XMLConstants;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * A SAX content handler building the events of a {@link JsonXMLReader} into a DOM document, without the detour through
+ * an identity transformer. Like in json-lib's XML text, the CDATA sections built for functions become CDATA nodes.
+ * @author Raul Kripalani
+ */
+final class DomBuilder extends DefaultHandler {
+
+	private static final String CDATA_START = "<![CDATA[";
+	private static final String CDATA_END = "]]>";
+
+	private final Document document;
+	private final Map<String, String> declarations = new LinkedHashMap<String, String>();
+	private Node current;
+
+	/**
+	 * @param document the empty document to build
+	 */
+	DomBuilder(Document document) {
+		this.document = document;
+		this.current = document;
+	}
+
+	@Override
+	public void startPrefixMapping(String prefix, String uri) {
+		declarations.put(prefix, uri);
+	}
+
+	@Override
+	public void startElement(String uri, String localName, String qName, Attributes attributes) {
+		Element element = isUndeclaredPrefix(uri, qName) ? document.createElement(qName) : document.createElementNS(emptyToNull(uri), qName);
+		for (int i = 0; i < attributes.getLength(); i++) {
+			String name = attributes.getQName(i);
+			// declarations are added from the prefix mappings
+			if (name.equals("xmlns") || name.startsWith("xmlns:")) {
+				continue;
+			}
+			if (isUndeclaredPrefix(attributes.getURI(i), name)) {
+				element.setAttribute(name, attributes.getValue(i));
+			} else {
+				element.setAttributeNS(emptyToNull(attributes.getURI(i)), name, attributes.getValue(i));
+			}
+		}
+		for (Entry<String, String> declaration : declarations.entrySet()) {
+			String name = declaration.getKey().length() == 0 ? "xmlns" : "xmlns:" + declaration.getKey();
+			element.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, name, declaration.getValue());
+		}
+		declarations.clear();
+		current.appendChild(element);
+		current = element;
+	}
+
+	@Override
+	public void endElement(String uri, String localName, String qName) {
+		current = current.getParentNode();
+	}
+
+	@Override
+	public void characters(char[] ch, int start, int length) {
+		String text = new String(ch, start, length);
+		if (text.startsWith(CDATA_START) && text.endsWith(CDATA_END) && text.length() >= CDATA_START.length() + CDATA_END.length()) {
+			current.appendChild(document.createCDATASection(text.substring(CDATA_START.length(), text.length() - CDATA_END.length())));
+		} else {
+			current.appendChild(document.createTextNode(text));
+		}
+	}
+
+	/**
+	 * json-lib lets undeclared prefixes through, which the namespace-aware DOM methods reject, so only those names are
+	 * created with the DOM Level 1 methods
+	 */
+	private static boolean isUndeclaredPrefix(String uri, String qName) {
+		return uri.length() == 0 && qName.indexOf(':') > 0;
+	}
+
+	private static String emptyToNull(String uri) {
+		return uri.length() == 0 ? null : uri;
+	}
+
+	public Document getDocument() {
+		return document;
+	}
+
+}
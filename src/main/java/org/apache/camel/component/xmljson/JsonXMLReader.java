@@ -0,0 +1,434 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.xmljson;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.xml.XMLConstants;
+
+import net.sf.json.JSON;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONFunction;
+import net.sf.json.JSONNull;
+import net.sf.json.JSONObject;
+import net.sf.json.util.JSONTypes;
+import net.sf.json.util.JSONUtils;
+import net.sf.json.xml.XMLSerializer;
+
+import org.apache.camel.component.xmljson.XmlJsonDataFormatConfig.NamespacesPerElementMapping;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.DTDHandler;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * An {@link XMLReader} which, instead of parsing a document, generates the SAX events of the XML representation of a
+ * JSON value, as json-lib's {@link XMLSerializer#write(JSON)} would produce it with the same settings. Wrapped in a
+ * <tt>SAXSource</tt>, it lets XSLT, XPath or DOM builders consume the result of an unmarshal operation without
+ * serializing it to XML text and parsing it back.
+ * <p/>
+ * The input source passed to {@link #parse(InputSource)} is ignored: the events always describe the JSON value given
+ * at construction time, and can be generated any number of times.
+ * @author Raul Kripalani
+ */
+public class JsonXMLReader implements XMLReader {
+
+	private static final String NAMESPACES_FEATURE = "http://xml.org/sax/features/namespaces";
+	private static final String NAMESPACE_PREFIXES_FEATURE = "http://xml.org/sax/features/namespace-prefixes";
+	private static final String JSON_PREFIX = "json_";
+	private static final String CDATA = "CDATA";
+
+	private final JSON json;
+	private final XMLSerializer serializer;
+	private final Map<String, String> rootNamespaces = new LinkedHashMap<String, String>();
+	private final Map<String, Map<String, String>> elementNamespaces = new HashMap<String, Map<String, String>>();
+	private final Map<String, Boolean> features = new HashMap<String, Boolean>();
+	private final Map<String, Object> properties = new HashMap<String, Object>();
+	private final Deque<Map<String, String>> scopes = new ArrayDeque<Map<String, String>>();
+	private ContentHandler contentHandler;
+	private DTDHandler dtdHandler;
+	private EntityResolver entityResolver;
+	private ErrorHandler errorHandler;
+
+	/**
+	 * @param json the JSON value to generate the XML events of
+	 * @param serializer the serializer whose settings (root, element, array and object names, expandable properties and
+	 *            type hints) apply
+	 * @param namespaceMappings the namespace declarations to add per element, may be null; ignored when the serializer
+	 *            is the one of an {@link XmlJsonDataFormat}, which knows its namespaces
+	 */
+	public JsonXMLReader(JSON json, XMLSerializer serializer, List<NamespacesPerElementMapping> namespaceMappings) {
+		this.json = json;
+		this.serializer = serializer;
+		this.features.put(NAMESPACES_FEATURE, Boolean.TRUE);
+		this.features.put(NAMESPACE_PREFIXES_FEATURE, Boolean.FALSE);
+		if (serializer instanceof NamespaceTrackingXMLSerializer) {
+			// holds the namespaces of the configuration too, along with those added to the serializer directly
+			((NamespaceTrackingXMLSerializer) serializer).copyNamespaces(rootNamespaces, elementNamespaces);
+		} else if (namespaceMappings != null) {
+			for (NamespacesPerElementMapping mapping : namespaceMappings) {
+				for (Entry<String, String> entry : mapping.namespaces.entrySet()) {
+					addNamespace(entry.getKey(), entry.getValue(), mapping.element);
+				}
+			}
+		}
+	}
+
+	// same semantics as XMLSerializer.addNamespace()
+	private void addNamespace(String prefix, String uri, String element) {
+		if (uri == null || uri.trim().length() == 0) {
+			return;
+		}
+		prefix = prefix == null ? "" : prefix.trim();
+		uri = uri.trim();
+		if (element == null || element.trim().length() == 0) {
+			rootNamespaces.put(prefix, uri);
+		} else {
+			Map<String, String> namespaces = elementNamespaces.get(element);
+			if (namespaces == null) {
+				namespaces = new LinkedHashMap<String, String>();
+				elementNamespaces.put(element, namespaces);
+			}
+			namespaces.put(prefix, uri);
+		}
+	}
+
+	@Override
+	public void parse(InputSource input) throws IOException, SAXException {
+		ContentHandler handler = contentHandler == null ? new DefaultHandler() : contentHandler;
+		scopes.clear();
+		handler.startDocument();
+		if (JSONNull.getInstance().equals(json)) {
+			AttributesImpl attributes = new AttributesImpl();
+			addAttribute(attributes, addJsonPrefix("null"), "true");
+			writeEmptyElement(handler, rootNameOr(serializer.getObjectName()), attributes);
+		} else if (json instanceof JSONArray) {
+			String name = rootNameOr(serializer.getArrayName());
+			Map<String, String> declarations = elementNamespaces(name);
+			ElementName element = startElement(handler, name, new AttributesImpl(), declarations);
+			writeArrayItems(handler, (JSONArray) json);
+			endElement(handler, element);
+		} else {
+			JSONObject object = (JSONObject) json;
+			if (object.isNullObject()) {
+				AttributesImpl attributes = new AttributesImpl();
+				addAttribute(attributes, addJsonPrefix("null"), "true");
+				writeEmptyElement(handler, serializer.getObjectName(), attributes);
+			} else {
+				writeObject(handler, rootNameOr(serializer.getObjectName()), object, new AttributesImpl(), true);
+			}
+		}
+		handler.endDocument();
+	}
+
+	@Override
+	public void parse(String systemId) throws IOException, SAXException {
+		parse(new InputSource(systemId));
+	}
+
+	private String rootNameOr(String name) {
+		return serializer.getRootName() == null ? name : serializer.getRootName();
+	}
+
+	/**
+	 * Counterpart of json-lib's <tt>processJSONValue()</tt>: writes an element holding any kind of JSON value
+	 */
+	private void writeValue(ContentHandler handler, String name, Object value) throws SAXException {
+		AttributesImpl attributes = new AttributesImpl();
+		if (JSONUtils.isBoolean(value)) {
+			addTypeHint(attributes, "type", JSONTypes.BOOLEAN);
+			writeTextElement(handler, name, attributes, value.toString());
+		} else if (JSONUtils.isNumber(value)) {
+			addTypeHint(attributes, "type", JSONTypes.NUMBER);
+			writeTextElement(handler, name, attributes, value.toString());
+		} else if (JSONUtils.isFunction(value)) {
+			JSONFunction function = value instanceof String ? JSONFunction.parse((String) value) : (JSONFunction) value;
+			addTypeHint(attributes, "type", JSONTypes.FUNCTION);
+			String params = Arrays.asList(function.getParams()).toString();
+			addAttribute(attributes, addJsonPrefix("params"), params.substring(1, params.length() - 1).replace(", ", ","));
+			writeTextElement(handler, name, attributes, "<![CDATA[" + function.getText() + "]]>");
+		} else if (JSONUtils.isString(value)) {
+			addTypeHint(attributes, "type", JSONTypes.STRING);
+			writeTextElement(handler, name, attributes, value.toString());
+		} else if (value instanceof JSONArray) {
+			addTypeHint(attributes, "class", JSONTypes.ARRAY);
+			Map<String, String> declarations = elementNamespaces(name);
+			ElementName element = startElement(handler, name, attributes, declarations);
+			writeArrayItems(handler, (JSONArray) value);
+			endElement(handler, element);
+		} else if (value instanceof JSONObject) {
+			addTypeHint(attributes, "class", JSONTypes.OBJECT);
+			writeObject(handler, name, (JSONObject) value, attributes, false);
+		} else if (JSONUtils.isNull(value)) {
+			addTypeHint(attributes, "class", JSONTypes.OBJECT);
+			addAttribute(attributes, addJsonPrefix("null"), "true");
+			writeEmptyElement(handler, name, attributes);
+		}
+	}
+
+	private void writeArrayItems(ContentHandler handler, JSONArray array) throws SAXException {
+		for (Iterator<?> items = array.iterator(); items.hasNext();) {
+			writeValue(handler, serializer.getElementName(), items.next());
+		}
+	}
+
+	/**
+	 * Counterpart of json-lib's <tt>processJSONObject()</tt>: keys starting with <tt>@xmlns</tt> become namespace
+	 * declarations, other keys starting with <tt>@</tt> attributes, <tt>#text</tt> the text content and all other keys
+	 * child elements, in the alphabetical order of the keys
+	 */
+	private void writeObject(ContentHandler handler, String name, JSONObject object, AttributesImpl attributes, boolean root) throws SAXException {
+		if (object.isNullObject()) {
+			addAttribute(attributes, addJsonPrefix("null"), "true");
+			writeEmptyElement(handler, name, attributes);
+			return;
+		}
+
+		Map<String, String> declarations = new LinkedHashMap<String, String>();
+		if (root && !object.isEmpty()) {
+			declarations.putAll(rootNamespaces);
+		}
+		declarations.putAll(elementNamespaces(name));
+
+		Object[] keys = object.keySet().toArray();
+		Arrays.sort(keys);
+		for (Object key : keys) {
+			String property = (String) key;
+			if (property.startsWith("@xmlns")) {
+				int colon = property.indexOf(':');
+				String prefix = colon == -1 ? "" : property.substring(colon + 1);
+				// do not override namespaces defined through the configuration
+				if (!declarations.containsKey(prefix)) {
+					declarations.put(prefix, String.valueOf(object.get(property)));
+				}
+			} else if (property.startsWith("@")) {
+				addAttribute(attributes, property.substring(1), String.valueOf(object.get(property)));
+			}
+		}
+
+		ElementName element = startElement(handler, name, attributes, declarations);
+		String[] expandableProperties = serializer.getExpandableProperties();
+		for (Object key : keys) {
+			String property = (String) key;
+			Object value = object.get(property);
+			if (property.startsWith("@")) {
+				continue;
+			} else if (property.equals("#text")) {
+				if (value instanceof JSONArray) {
+					StringBuilder text = new StringBuilder();
+					for (Iterator<?> items = ((JSONArray) value).iterator(); items.hasNext();) {
+						text.append(items.next());
+					}
+					writeText(handler, text.toString());
+				} else {
+					writeText(handler, String.valueOf(value));
+				}
+			} else if (value instanceof JSONArray && (((JSONArray) value).isExpandElements()
+					|| expandableProperties != null && Arrays.asList(expandableProperties).contains(property))) {
+				for (Iterator<?> items = ((JSONArray) value).iterator(); items.hasNext();) {
+					writeValue(handler, property, items.next());
+				}
+			} else {
+				writeValue(handler, property, value);
+			}
+		}
+		endElement(handler, element);
+	}
+
+	private Map<String, String> elementNamespaces(String name) {
+		Map<String, String> namespaces = elementNamespaces.get(name);
+		return namespaces == null ? Collections.<String, String>emptyMap() : namespaces;
+	}
+
+	private void writeTextElement(ContentHandler handler, String name, AttributesImpl attributes, String text) throws SAXException {
+		Map<String, String> declarations = elementNamespaces(name);
+		ElementName element = startElement(handler, name, attributes, declarations);
+		writeText(handler, text);
+		endElement(handler, element);
+	}
+
+	private void writeEmptyElement(ContentHandler handler, String name, AttributesImpl attributes) throws SAXException {
+		Map<String, String> declarations = elementNamespaces(name);
+		endElement(handler, startElement(handler, name, attributes, declarations));
+	}
+
+	private static void writeText(ContentHandler handler, String text) throws SAXException {
+		if (text.length() > 0) {
+			handler.characters(text.toCharArray(), 0, text.length());
+		}
+	}
+
+	private ElementName startElement(ContentHandler handler, String qName, AttributesImpl attributes, Map<String, String> declarations) throws SAXException {
+		ElementName element = new ElementName(qName);
+		// like in json-lib's output, elements without a namespace of their own are in the default namespace in scope
+		element.uri = lookupNamespace(element.prefix, declarations);
+		scopes.push(declarations);
+
+		// resolve the attribute namespaces now that the declarations of this element are in scope
+		for (int i = 0; i < attributes.getLength(); i++) {
+			ElementName attribute = new ElementName(attributes.getQName(i));
+			if (attribute.prefix.length() > 0) {
+				attributes.setURI(i, lookupNamespace(attribute.prefix, declarations));
+				attributes.setLocalName(i, attribute.localName);
+			}
+		}
+		if (features.get(NAMESPACE_PREFIXES_FEATURE)) {
+			for (Entry<String, String> declaration : declarations.entrySet()) {
+				String prefix = declaration.getKey();
+				attributes.addAttribute("", "", prefix.length() == 0 ? "xmlns" : "xmlns:" + prefix, CDATA, declaration.getValue());
+			}
+		}
+
+		for (Entry<String, String> declaration : declarations.entrySet()) {
+			handler.startPrefixMapping(declaration.getKey(), declaration.getValue());
+		}
+		handler.startElement(element.uri, element.localName, element.qName, attributes);
+		return element;
+	}
+
+	private void endElement(ContentHandler handler, ElementName element) throws SAXException {
+		handler.endElement(element.uri, element.localName, element.qName);
+		for (String prefix : scopes.pop().keySet()) {
+			handler.endPrefixMapping(prefix);
+		}
+	}
+
+	private String lookupNamespace(String prefix, Map<String, String> declarations) {
+		if (declarations.containsKey(prefix)) {
+			return declarations.get(prefix);
+		}
+		if (XMLConstants.XML_NS_PREFIX.equals(prefix)) {
+			return XMLConstants.XML_NS_URI;
+		}
+		for (Map<String, String> scope : scopes) {
+			if (scope.containsKey(prefix)) {
+				return scope.get(prefix);
+			}
+		}
+		// json-lib lets undeclared prefixes through
+		return "";
+	}
+
+	private void addTypeHint(AttributesImpl attributes, String name, String type) {
+		if (serializer.isTypeHintsEnabled()) {
+			addAttribute(attributes, addJsonPrefix(name), type);
+		}
+	}
+
+	private String addJsonPrefix(String name) {
+		return serializer.isTypeHintsCompatibility() ? name : JSON_PREFIX + name;
+	}
+
+	private static void addAttribute(AttributesImpl attributes, String qName, String value) {
+		// namespaces are resolved when the element starts
+		attributes.addAttribute("", qName, qName, CDATA, value);
+	}
+
+	private static final class ElementName {
+		private final String qName;
+		private final String prefix;
+		private final String localName;
+		private String uri;
+
+		private ElementName(String qName) {
+			int colon = qName.indexOf(':');
+			this.qName = qName;
+			this.prefix = colon == -1 ? "" : qName.substring(0, colon);
+			this.localName = colon == -1 ? qName : qName.substring(colon + 1);
+		}
+	}
+
+	// XMLReader configuration
+	// -------------------------------------------------------------------------
+
+	@Override
+	public boolean getFeature(String name) {
+		Boolean value = features.get(name);
+		return value != null && value;
+	}
+
+	@Override
+	public void setFeature(String name, boolean value) {
+		features.put(name, value);
+	}
+
+	@Override
+	public Object getProperty(String name) {
+		return properties.get(name);
+	}
+
+	@Override
+	public void setProperty(String name, Object value) {
+		properties.put(name, value);
+	}
+
+	@Override
+	public void setEntityResolver(EntityResolver resolver) {
+		this.entityResolver = resolver;
+	}
+
+	@Override
+	public EntityResolver getEntityResolver() {
+		return entityResolver;
+	}
+
+	@Override
+	public void setDTDHandler(DTDHandler handler) {
+		this.dtdHandler = handler;
+	}
+
+	@Override
+	public DTDHandler getDTDHandler() {
+		return dtdHandler;
+	}
+
+	@Override
+	public void setContentHandler(ContentHandler handler) {
+		this.contentHandler = handler;
+	}
+
+	@Override
+	public ContentHandler getContentHandler() {
+		return contentHandler;
+	}
+
+	@Override
+	public void setErrorHandler(ErrorHandler handler) {
+		this.errorHandler = handler;
+	}
+
+	@Override
+	public ErrorHandler getErrorHandler() {
+		return errorHandler;
+	}
+
+}
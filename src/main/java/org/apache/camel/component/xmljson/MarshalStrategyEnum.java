@@ -0,0 +1,49 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.camel.component.xmljson;
+
+/**
+ * How {@link XmlJsonDataFormat} feeds an XML payload to json-lib when marshalling
+ */
+public enum MarshalStrategyEnum {
+	
+	/**
+	 * The payload is a String and is parsed as-is
+	 */
+	STRING,
+	
+	/**
+	 * The payload is read into a byte array, which is decoded with the encoding declared by the document and parsed as a
+	 * String. Cheapest for small messages, whose type converters to byte arrays are usually the most direct
+	 */
+	BYTES,
+	
+	/**
+	 * The payload is decoded with the encoding declared by the document as it is read from an InputStream, avoiding an
+	 * intermediate byte array of the whole message. json-lib still parses the resulting String, so the message is held
+	 * in memory once as text
+	 */
+	STREAM,
+	
+	/**
+	 * The payload is parsed from an InputStream, and text nodes above the spool threshold are kept in temporary files
+	 * rather than in memory
+	 */
+	SPOOL
+	
+}
@@ -0,0 +1,119 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.xmljson;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import net.sf.json.xml.XMLSerializer;
+
+/**
+ * An {@link XMLSerializer} keeping its own copy of the namespace declarations, which json-lib does not expose, so that
+ * a {@link JsonXMLReader} sees the namespaces added through {@link XmlJsonDataFormat#getSerializer()} as well as those
+ * of the configuration.
+ * @author Raul Kripalani
+ */
+class NamespaceTrackingXMLSerializer extends XMLSerializer {
+
+	private final Map<String, String> rootNamespaces = new LinkedHashMap<String, String>();
+	private final Map<String, Map<String, String>> elementNamespaces = new HashMap<String, Map<String, String>>();
+
+	@Override
+	public void addNamespace(String prefix, String uri) {
+		addNamespace(prefix, uri, null);
+	}
+
+	@Override
+	public synchronized void addNamespace(String prefix, String uri, String elementName) {
+		super.addNamespace(prefix, uri, elementName);
+		if (isBlank(uri)) {
+			return;
+		}
+		namespaces(elementName).put(prefix == null ? "" : prefix.trim(), uri.trim());
+	}
+
+	@Override
+	public void setNamespace(String prefix, String uri) {
+		setNamespace(prefix, uri, null);
+	}
+
+	@Override
+	public synchronized void setNamespace(String prefix, String uri, String elementName) {
+		super.setNamespace(prefix, uri, elementName);
+		if (isBlank(uri)) {
+			return;
+		}
+		Map<String, String> namespaces = namespaces(elementName);
+		namespaces.clear();
+		namespaces.put(prefix == null ? "" : prefix.trim(), uri.trim());
+	}
+
+	@Override
+	public void removeNamespace(String prefix) {
+		removeNamespace(prefix, null);
+	}
+
+	@Override
+	public synchronized void removeNamespace(String prefix, String elementName) {
+		super.removeNamespace(prefix, elementName);
+		namespaces(elementName).remove(prefix == null ? "" : prefix.trim());
+	}
+
+	@Override
+	public synchronized void clearNamespaces() {
+		super.clearNamespaces();
+		rootNamespaces.clear();
+		elementNamespaces.clear();
+	}
+
+	@Override
+	public synchronized void clearNamespaces(String elementName) {
+		super.clearNamespaces(elementName);
+		elementNamespaces.remove(elementName);
+	}
+
+	/**
+	 * Copies the namespace declarations into the given maps
+	 * @param root receives the declarations of the root element
+	 * @param perElement receives the declarations of the other elements, by element name
+	 */
+	synchronized void copyNamespaces(Map<String, String> root, Map<String, Map<String, String>> perElement) {
+		root.putAll(rootNamespaces);
+		for (Entry<String, Map<String, String>> entry : elementNamespaces.entrySet()) {
+			perElement.put(entry.getKey(), new LinkedHashMap<String, String>(entry.getValue()));
+		}
+	}
+
+	private Map<String, String> namespaces(String elementName) {
+		if (isBlank(elementName)) {
+			return rootNamespaces;
+		}
+		Map<String, String> namespaces = elementNamespaces.get(elementName);
+		if (namespaces == null) {
+			namespaces = new LinkedHashMap<String, String>();
+			elementNamespaces.put(elementName, namespaces);
+		}
+		return namespaces;
+	}
+
+	private static boolean isBlank(String value) {
+		return value == null || value.trim().length() == 0;
+	}
+
+}
@@ -0,0 +1,131 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.xmljson;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * A message body backed by segments of a {@link BufferPool}, as produced by a {@link SegmentedOutputStream}.
+ * <p/>
+ * Like any other stream body, it can be read once only: the segments go back to the pool as soon as the stream has been
+ * read to the end or is closed, whichever comes first. It does not depend on the exchange which created it, so it can
+ * be returned to a producer template or handed to another thread. A stream which is never read nor closed simply leaves
+ * its segments to the garbage collector, since the pool does not keep track of the segments it hands out. Enable stream
+ * caching, or convert the body, if it must be read more than once.
+ * <p/>
+ * Instances are not thread-safe.
+ * @author Raul Kripalani
+ */
+public class SegmentedInputStream extends InputStream {
+
+	private final BufferPool pool;
+	private final List<ByteBuffer> segments;
+	private final long length;
+	private boolean released;
+	private boolean exhausted;
+	private int segmentIndex;
+	private int position;
+
+	SegmentedInputStream(BufferPool pool, List<ByteBuffer> segments, long length) {
+		this.pool = pool;
+		this.segments = segments;
+		this.length = length;
+	}
+
+	@Override
+	public int read() throws IOException {
+		ByteBuffer segment = currentSegment();
+		if (segment == null) {
+			return -1;
+		}
+		return segment.get(position++) & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		ByteBuffer segment = currentSegment();
+		if (segment == null) {
+			return -1;
+		}
+		int count = Math.min(len, segment.limit() - position);
+		segment.position(position);
+		segment.get(b, off, count);
+		position += count;
+		return count;
+	}
+
+	@Override
+	public int available() throws IOException {
+		ByteBuffer segment = currentSegment();
+		return segment == null ? 0 : segment.limit() - position;
+	}
+
+	/**
+	 * @return the segment to read from next, or null at the end of the stream, at which point the segments are released
+	 */
+	private ByteBuffer currentSegment() throws IOException {
+		if (exhausted) {
+			return null;
+		}
+		if (released) {
+			throw new IOException("Stream closed");
+		}
+		while (segmentIndex < segments.size()) {
+			ByteBuffer segment = segments.get(segmentIndex);
+			if (position < segment.limit()) {
+				return segment;
+			}
+			segmentIndex++;
+			position = 0;
+		}
+		exhausted = true;
+		release();
+		return null;
+	}
+
+	/**
+	 * Gives the segments back to the pool, even if the stream was not read to the end
+	 */
+	@Override
+	public void close() {
+		release();
+	}
+
+	private void release() {
+		if (!released) {
+			released = true;
+			for (ByteBuffer segment : segments) {
+				pool.release(segment);
+			}
+			segments.clear();
+		}
+	}
+
+	/**
+	 * @return the number of bytes held
+	 */
+	public long length() {
+		return length;
+	}
+
+}
@@ -0,0 +1,117 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.xmljson;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An output stream writing into segments taken from a {@link BufferPool}. Unlike a <tt>ByteArrayOutputStream</tt>, it
+ * never copies what was already written when it grows: it just takes another segment. The result is handed over
+ * without copying either, as a {@link SegmentedInputStream}.
+ * @author Raul Kripalani
+ */
+public class SegmentedOutputStream extends OutputStream {
+
+	private final BufferPool pool;
+	private final List<ByteBuffer> segments = new ArrayList<ByteBuffer>();
+	private ByteBuffer current;
+	private long size;
+
+	public SegmentedOutputStream(BufferPool pool) {
+		this.pool = pool;
+	}
+
+	@Override
+	public void write(int b) {
+		if (current == null || !current.hasRemaining()) {
+			nextSegment();
+		}
+		current.put((byte) b);
+		size++;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) {
+		while (len > 0) {
+			if (current == null || !current.hasRemaining()) {
+				nextSegment();
+			}
+			int count = Math.min(len, current.remaining());
+			current.put(b, off, count);
+			off += count;
+			len -= count;
+			size += count;
+		}
+	}
+
+	private void nextSegment() {
+		current = pool.acquire();
+		segments.add(current);
+	}
+
+	/**
+	 * @return the number of bytes written so far
+	 */
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * Discards the bytes written after the given size, giving back to the pool the segments which become empty
+	 * @param newSize the number of bytes to keep, at most {@link #size()}
+	 */
+	public void truncate(long newSize) {
+		if (newSize < 0 || newSize > size) {
+			throw new IllegalArgumentException("Cannot truncate " + size + " bytes to " + newSize);
+		}
+		long excess = size - newSize;
+		while (excess > 0) {
+			int written = current.position();
+			if (written <= excess) {
+				segments.remove(segments.size() - 1);
+				pool.release(current);
+				current = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+				excess -= written;
+				size -= written;
+			} else {
+				current.position(written - (int) excess);
+				size -= excess;
+				excess = 0;
+			}
+		}
+	}
+
+	/**
+	 * Hands the segments over to an input stream, which becomes responsible for giving them back to the pool. This
+	 * stream must not be written to afterwards
+	 * @return the input stream holding the bytes written
+	 */
+	public SegmentedInputStream toInputStream() {
+		List<ByteBuffer> written = new ArrayList<ByteBuffer>(segments.size());
+		for (ByteBuffer segment : segments) {
+			segment.flip();
+			written.add(segment);
+		}
+		segments.clear();
+		current = null;
+		return new SegmentedInputStream(pool, written, size);
+	}
+
+}
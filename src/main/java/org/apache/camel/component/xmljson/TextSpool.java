@@ -0,0 +1,311 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.xmljson;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.UUID;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import net.sf.json.util.JSONTypes;
+
+import org.apache.camel.util.IOHelper;
+
+/**
+ * Keeps huge text nodes out of the heap while json-lib converts an XML document to JSON.
+ * <p/>
+ * The XML document is first scanned with StAX and copied without its large text nodes: every text node longer than
+ * the threshold is written to a temporary file as it is being read, and replaced by a short placeholder token. json-lib
+ * then converts the (small) copy, and the writer returned by {@link #createWriter(Writer)} replaces the placeholders
+ * found in the JSON output with the contents of the corresponding files, escaped with {@link XmlJsonEscaping} and
+ * streamed in chunks.
+ * <p/>
+ * Spooled text is copied verbatim, i.e. it is not affected by the <tt>trimSpaces</tt> option. The text of elements with
+ * a type hint other than <tt>string</tt> (e.g. <tt>json_type="number"</tt>) is never spooled, as json-lib would parse the
+ * placeholder as a value of that type. Comments and processing instructions are dropped during the scan, as json-lib
+ * ignores them anyway. Instances are meant for a single conversion and must be {@link #close() closed} to delete the
+ * temporary files.
+ * <p/>
+ * Only the conversion itself is kept out of the heap: the spooled text is streamed into the writer given to
+ * {@link #createWriter(Writer)}, so the JSON output as a whole is still held in memory when that writer is, as with
+ * the byte array body produced by the marshal processor.
+ */
+final class TextSpool {
+
+	private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
+	private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+	private static final String CHARSET = "UTF-8";
+	private static final int CHUNK_SIZE = 8192;
+	private static final String[] TYPE_HINTS = {"json_type", "type"};
+
+	private final long threshold;
+	private final File directory;
+	// starts with the only 'x' in the token, which makes matching it in the JSON output a simple affair
+	private final char[] token;
+	private final List<File> files = new ArrayList<File>();
+
+	TextSpool(long threshold, File directory) {
+		this.threshold = threshold;
+		this.directory = directory;
+		this.token = ("xmljsonspool" + UUID.randomUUID().toString().replace("-", "") + "n").toCharArray();
+	}
+
+	/**
+	 * Copies the XML document read from the stream, spooling its large text nodes to disk
+	 * @param xml the XML document
+	 * @return the XML document with placeholders in place of the large text nodes
+	 */
+	String filter(InputStream xml) throws XMLStreamException, IOException {
+		return filter(INPUT_FACTORY.createXMLStreamReader(xml));
+	}
+
+	/**
+	 * Copies the XML document read from the reader, spooling its large text nodes to disk
+	 * @param xml the XML document
+	 * @return the XML document with placeholders in place of the large text nodes
+	 */
+	String filter(Reader xml) throws XMLStreamException, IOException {
+		return filter(INPUT_FACTORY.createXMLStreamReader(xml));
+	}
+
+	private String filter(XMLStreamReader reader) throws XMLStreamException, IOException {
+		StringWriter result = new StringWriter();
+		XMLStreamWriter writer = OUTPUT_FACTORY.createXMLStreamWriter(result);
+		StringBuilder text = new StringBuilder();
+		Writer spoolWriter = null;
+		// whether the text of the elements being read may be spooled
+		Deque<Boolean> spoolable = new ArrayDeque<Boolean>();
+		try {
+			while (reader.hasNext()) {
+				int event = reader.next();
+				switch (event) {
+				case XMLStreamConstants.CHARACTERS:
+				case XMLStreamConstants.CDATA:
+				case XMLStreamConstants.SPACE:
+					if (spoolWriter == null && (spoolable.isEmpty() || spoolable.peek()) && text.length() + reader.getTextLength() > threshold) {
+						spoolWriter = openSpoolFile();
+						spoolWriter.append(text);
+						text.setLength(0);
+					}
+					if (spoolWriter == null) {
+						text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+					} else {
+						spoolWriter.write(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+					}
+					break;
+				case XMLStreamConstants.START_ELEMENT:
+					spoolWriter = writeText(writer, text, spoolWriter);
+					writeStartElement(reader, writer);
+					spoolable.push(!hasTypeHint(reader));
+					break;
+				case XMLStreamConstants.END_ELEMENT:
+					spoolWriter = writeText(writer, text, spoolWriter);
+					writer.writeEndElement();
+					spoolable.pop();
+					break;
+				case XMLStreamConstants.END_DOCUMENT:
+					writer.writeEndDocument();
+					break;
+				default:
+					// comments, processing instructions and DTDs are not relevant to json-lib
+					break;
+				}
+			}
+			writer.flush();
+		} finally {
+			IOHelper.close(spoolWriter);
+			reader.close();
+			writer.close();
+		}
+		return result.toString();
+	}
+
+	private Writer writeText(XMLStreamWriter writer, StringBuilder text, Writer spoolWriter) throws XMLStreamException, IOException {
+		if (spoolWriter != null) {
+			spoolWriter.close();
+			writer.writeCharacters(new String(token) + (files.size() - 1));
+		} else if (text.length() > 0) {
+			writer.writeCharacters(text.toString());
+			text.setLength(0);
+		}
+		return null;
+	}
+
+	private static void writeStartElement(XMLStreamReader reader, XMLStreamWriter writer) throws XMLStreamException {
+		writer.writeStartElement(nonNull(reader.getPrefix()), reader.getLocalName(), nonNull(reader.getNamespaceURI()));
+		for (int i = 0; i < reader.getNamespaceCount(); i++) {
+			String prefix = reader.getNamespacePrefix(i);
+			if (prefix == null || prefix.length() == 0) {
+				writer.writeDefaultNamespace(nonNull(reader.getNamespaceURI(i)));
+			} else {
+				writer.writeNamespace(prefix, nonNull(reader.getNamespaceURI(i)));
+			}
+		}
+		for (int i = 0; i < reader.getAttributeCount(); i++) {
+			String prefix = reader.getAttributePrefix(i);
+			if (prefix == null || prefix.length() == 0) {
+				writer.writeAttribute(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+			} else {
+				writer.writeAttribute(prefix, nonNull(reader.getAttributeNamespace(i)), reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+			}
+		}
+	}
+
+	/**
+	 * Whether the element carries a type hint, with or without json-lib's prefix, which makes its text anything but a
+	 * string
+	 */
+	private static boolean hasTypeHint(XMLStreamReader reader) {
+		for (int i = 0; i < reader.getAttributeCount(); i++) {
+			String prefix = reader.getAttributePrefix(i);
+			if ((prefix == null || prefix.length() == 0) && Arrays.asList(TYPE_HINTS).contains(reader.getAttributeLocalName(i))
+					&& !JSONTypes.STRING.equalsIgnoreCase(reader.getAttributeValue(i).trim())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static String nonNull(String value) {
+		return value == null ? "" : value;
+	}
+
+	private Writer openSpoolFile() throws IOException {
+		File file = File.createTempFile("camel-xmljson", ".tmp", directory);
+		files.add(file);
+		return new OutputStreamWriter(new FileOutputStream(file), CHARSET);
+	}
+
+	/**
+	 * Wraps the writer the JSON output is written to, so that placeholders are replaced with the spooled text
+	 * @param out the actual destination of the JSON output
+	 * @return the writer to hand to json-lib, which must be {@link Writer#flush() flushed} once the JSON is written
+	 */
+	Writer createWriter(Writer out) {
+		return new SpoolReplacingWriter(out);
+	}
+
+	/**
+	 * Deletes the temporary files
+	 */
+	void close() {
+		for (File file : files) {
+			file.delete();
+		}
+		files.clear();
+	}
+
+	/**
+	 * Copies the spooled text with the given index to the writer, escaped as the contents of a JSON string
+	 */
+	private void copySpooledText(int index, Writer out) throws IOException {
+		Reader reader = new InputStreamReader(new FileInputStream(files.get(index)), CHARSET);
+		try {
+			char[] chunk = new char[CHUNK_SIZE];
+			char previous = 0;
+			int read;
+			while ((read = reader.read(chunk)) != -1) {
+				previous = XmlJsonEscaping.escapeJson(chunk, 0, read, previous, out);
+			}
+		} finally {
+			IOHelper.close(reader);
+		}
+	}
+
+	/**
+	 * Passes the JSON output through, replacing every placeholder token (followed by the index of the spool file)
+	 * with the spooled text
+	 */
+	private final class SpoolReplacingWriter extends Writer {
+		private final Writer out;
+		private int matched;
+		private int index;
+
+		private SpoolReplacingWriter(Writer out) {
+			this.out = out;
+		}
+
+		@Override
+		public void write(char[] cbuf, int off, int len) throws IOException {
+			int end = off + len;
+			int runStart = off;
+			for (int i = off; i < end; i++) {
+				char c = cbuf[i];
+				if (matched == token.length) {
+					if (c >= '0' && c <= '9') {
+						index = index * 10 + (c - '0');
+						runStart = i + 1;
+						continue;
+					}
+					copySpooledText(index, out);
+					matched = 0;
+					index = 0;
+					runStart = i;
+				}
+				if (c == token[matched]) {
+					// write what precedes the possible token
+					out.write(cbuf, runStart, i - runStart);
+					matched++;
+					runStart = i + 1;
+				} else if (matched > 0) {
+					// false alarm, write the part of the token held back so far
+					out.write(token, 0, matched);
+					matched = c == token[0] ? 1 : 0;
+					runStart = matched == 0 ? i : i + 1;
+				}
+			}
+			out.write(cbuf, runStart, end - runStart);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			if (matched == token.length) {
+				copySpooledText(index, out);
+			} else if (matched > 0) {
+				out.write(token, 0, matched);
+			}
+			matched = 0;
+			index = 0;
+			out.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			flush();
+		}
+	}
+
+}
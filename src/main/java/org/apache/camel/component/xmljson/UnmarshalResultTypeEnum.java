@@ -0,0 +1,46 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.camel.component.xmljson;
+
+/**
+ * The type of the message body {@link XmlJsonDataFormat} produces when unmarshalling
+ */
+public enum UnmarshalResultTypeEnum {
+	
+	/**
+	 * XML text, as written by json-lib (or a stream cache holding it, when using pooled buffers)
+	 */
+	STRING,
+	
+	/**
+	 * A W3C DOM {@link org.w3c.dom.Document}, built directly from the JSON tree
+	 */
+	DOCUMENT,
+	
+	/**
+	 * A {@link javax.xml.transform.dom.DOMSource} wrapping a document built directly from the JSON tree
+	 */
+	DOM_SOURCE,
+	
+	/**
+	 * A {@link javax.xml.transform.sax.SAXSource} generating the XML events from the JSON tree on demand, every time it
+	 * is consumed
+	 */
+	SAX_SOURCE
+	
+}
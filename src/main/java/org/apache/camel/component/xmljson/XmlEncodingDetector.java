@@ -0,0 +1,121 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.xmljson;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Decodes XML documents held as bytes into text, using the encoding given by their byte order mark or XML declaration
+ * as described in appendix F of the XML specification, and UTF-8 when there is neither.
+ * <p/>
+ * json-lib's own <tt>XMLSerializer.readFromStream</tt> decodes with the platform charset, so byte-backed payloads are
+ * decoded here and handed to json-lib as a String.
+ * @author Raul Kripalani
+ */
+final class XmlEncodingDetector {
+
+	// long enough for any reasonable XML declaration
+	private static final int PROLOG_LIMIT = 256;
+	private static final Pattern ENCODING = Pattern.compile("encoding\\s*=\\s*[\"']([A-Za-z][A-Za-z0-9._\\-]*)[\"']");
+	private static final String DEFAULT_ENCODING = "UTF-8";
+
+	private XmlEncodingDetector() {
+	}
+
+	/**
+	 * Reads the whole XML document from the stream
+	 * @param stream the XML document, which is not closed
+	 * @param sizeHint the expected number of bytes, or -1 if unknown
+	 * @return the XML document as text
+	 */
+	static String readText(InputStream stream, int sizeHint) throws IOException {
+		Reader reader = createReader(stream);
+		StringBuilder text = new StringBuilder(sizeHint > 0 ? sizeHint : 8192);
+		char[] buffer = new char[8192];
+		int read;
+		while ((read = reader.read(buffer)) != -1) {
+			text.append(buffer, 0, read);
+		}
+		return text.toString();
+	}
+
+	/**
+	 * @param stream the XML document
+	 * @return a reader decoding the stream with the encoding of the document, positioned after the byte order mark
+	 */
+	static Reader createReader(InputStream stream) throws IOException {
+		InputStream in = stream.markSupported() ? stream : new BufferedInputStream(stream);
+		in.mark(PROLOG_LIMIT);
+		byte[] head = new byte[PROLOG_LIMIT];
+		int length = 0;
+		int read;
+		while (length < head.length && (read = in.read(head, length, head.length - length)) != -1) {
+			length += read;
+		}
+		in.reset();
+
+		if (startsWith(head, length, 0xEF, 0xBB, 0xBF)) {
+			// the UTF-8 decoder does not skip the byte order mark by itself
+			in.skip(3);
+			return new InputStreamReader(in, "UTF-8");
+		} else if (startsWith(head, length, 0xFE, 0xFF) || startsWith(head, length, 0xFF, 0xFE)) {
+			return new InputStreamReader(in, "UTF-16");
+		} else if (startsWith(head, length, 0x00, 0x3C, 0x00, 0x3F)) {
+			return new InputStreamReader(in, "UTF-16BE");
+		} else if (startsWith(head, length, 0x3C, 0x00, 0x3F, 0x00)) {
+			return new InputStreamReader(in, "UTF-16LE");
+		}
+		return new InputStreamReader(in, getDeclaredEncoding(head, length));
+	}
+
+	private static String getDeclaredEncoding(byte[] head, int length) throws IOException {
+		// the declaration is ASCII in every encoding left at this point
+		return getDeclaredEncoding(new String(head, 0, length, "ISO-8859-1"));
+	}
+
+	/**
+	 * @param prolog the beginning of an XML document
+	 * @return the encoding named by its XML declaration, UTF-8 when there is none
+	 */
+	static String getDeclaredEncoding(String prolog) {
+		if (!prolog.startsWith("<?xml")) {
+			return DEFAULT_ENCODING;
+		}
+		int end = prolog.indexOf("?>");
+		Matcher matcher = ENCODING.matcher(end < 0 ? prolog : prolog.substring(0, end));
+		return matcher.find() ? matcher.group(1) : DEFAULT_ENCODING;
+	}
+
+	private static boolean startsWith(byte[] head, int length, int... prefix) {
+		if (length < prefix.length) {
+			return false;
+		}
+		for (int i = 0; i < prefix.length; i++) {
+			if ((head[i] & 0xFF) != prefix[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
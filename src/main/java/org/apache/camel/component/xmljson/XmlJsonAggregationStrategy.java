@@ -0,0 +1,241 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.xmljson;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Predicate;
+import org.apache.camel.processor.aggregate.CompletionAwareAggregationStrategy;
+import org.apache.camel.util.ObjectHelper;
+
+/**
+ * An aggregation strategy which converts each incoming XML message to JSON using a {@link XmlJsonDataFormat} and appends
+ * it as an element of a JSON array, directly into one growing output buffer per aggregated exchange. This avoids
+ * allocating a new writer and a new byte array for every message and concatenating the resulting JSON strings afterwards.
+ * <p/>
+ * The batch is closed when the aggregator completes the exchange, at which point the body becomes a <tt>byte[]</tt>
+ * holding the JSON array, or a {@link SegmentedInputStream} if the data format uses pooled buffers. Use
+ * {@link #getCompletionPredicate()} to complete a batch once the configured message count ({@link #setMaxMessages(int)})
+ * or output size in bytes ({@link #setMaxBytes(long)}) is reached, for example:
+ * <pre>
+ * XmlJsonAggregationStrategy batch = new XmlJsonAggregationStrategy(new XmlJsonDataFormat());
+ * batch.setMaxMessages(1000);
+ * batch.setMaxBytes(1024 * 1024);
+ * from("direct:events").aggregate(constant(true), batch).completionPredicate(batch.getCompletionPredicate())
+ *     .completionTimeout(1000).to("http://bulk-api");
+ * </pre>
+ * A message which fails to convert is rejected with its exception and leaves the batch as it was before it.
+ * <p/>
+ * The batch under construction is kept in memory as a property of the aggregated exchange, so only aggregation
+ * repositories holding exchanges by reference are supported, such as the default in-memory one. Persistent
+ * repositories (JDBC, HawtDB...) would lose it.
+ * @author Raul Kripalani
+ */
+public class XmlJsonAggregationStrategy implements CompletionAwareAggregationStrategy {
+
+	/**
+	 * Exchange property set to <tt>true</tt> on the aggregated exchange once one of the flush thresholds is reached
+	 */
+	public static final String BATCH_COMPLETE = "CamelXmlJsonBatchComplete";
+
+	/**
+	 * Exchange property holding the number of messages appended to the batch so far
+	 */
+	public static final String BATCH_SIZE = "CamelXmlJsonBatchSize";
+
+	private static final String BATCH_BUFFER = "CamelXmlJsonBatchBuffer";
+
+	private static final int DEFAULT_INITIAL_CAPACITY = 8192;
+
+	private final XmlJsonDataFormat dataFormat;
+	private int maxMessages;
+	private long maxBytes;
+	private int initialCapacity = DEFAULT_INITIAL_CAPACITY;
+
+	public XmlJsonAggregationStrategy(XmlJsonDataFormat dataFormat) {
+		this.dataFormat = dataFormat;
+	}
+
+	@Override
+	public Exchange aggregate(Exchange oldExchange, Exchange newExchange) {
+		Exchange answer = oldExchange == null ? newExchange : oldExchange;
+		Batch batch = answer.getProperty(BATCH_BUFFER, Batch.class);
+		if (batch == null) {
+			batch = new Batch(initialCapacity);
+			answer.setProperty(BATCH_BUFFER, batch);
+		}
+
+		try {
+			batch.append(newExchange);
+		} catch (Exception e) {
+			throw ObjectHelper.wrapRuntimeCamelException(e);
+		}
+
+		answer.setProperty(BATCH_SIZE, batch.count);
+		if ((maxMessages > 0 && batch.count >= maxMessages) || (maxBytes > 0 && batch.size() >= maxBytes)) {
+			answer.setProperty(BATCH_COMPLETE, Boolean.TRUE);
+		}
+		return answer;
+	}
+
+	@Override
+	public void onCompletion(Exchange exchange) {
+		Batch batch = exchange.getProperty(BATCH_BUFFER, Batch.class);
+		if (batch == null) {
+			return;
+		}
+
+		Object body;
+		try {
+			body = batch.close();
+		} catch (IOException e) {
+			throw ObjectHelper.wrapRuntimeCamelException(e);
+		}
+		exchange.getIn().setBody(body);
+		exchange.removeProperty(BATCH_BUFFER);
+		exchange.removeProperty(BATCH_COMPLETE);
+	}
+
+	/**
+	 * Returns a predicate matching aggregated exchanges which reached the message count or byte size threshold, to be
+	 * used as the completion predicate of the aggregator
+	 * @return the completion predicate
+	 */
+	public Predicate getCompletionPredicate() {
+		return new Predicate() {
+			@Override
+			public boolean matches(Exchange exchange) {
+				return exchange.getProperty(BATCH_COMPLETE, false, Boolean.class);
+			}
+		};
+	}
+
+	// Properties
+    // -------------------------------------------------------------------------
+
+	public XmlJsonDataFormat getDataFormat() {
+		return dataFormat;
+	}
+
+	public int getMaxMessages() {
+		return maxMessages;
+	}
+
+	/**
+	 * Number of messages after which the batch is considered complete, 0 (the default) means no limit
+	 */
+	public void setMaxMessages(int maxMessages) {
+		this.maxMessages = maxMessages;
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/**
+	 * Size in bytes of the JSON output after which the batch is considered complete, 0 (the default) means no limit
+	 */
+	public void setMaxBytes(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	public int getInitialCapacity() {
+		return initialCapacity;
+	}
+
+	/**
+	 * Initial capacity in bytes of the buffer allocated for every new batch
+	 */
+	public void setInitialCapacity(int initialCapacity) {
+		this.initialCapacity = initialCapacity;
+	}
+
+	/**
+	 * The shared output of a batch: the JSON array being built and the writer feeding it. The array is built in
+	 * segments of the data format's {@link BufferPool} if it has one, or in a byte array otherwise
+	 */
+	private final class Batch {
+		private final TruncatableByteArrayOutputStream bytes;
+		private final SegmentedOutputStream segments;
+		private OutputStreamWriter writer;
+		private int count;
+
+		private Batch(int initialCapacity) {
+			if (dataFormat.getBufferPool() != null) {
+				this.bytes = null;
+				this.segments = new SegmentedOutputStream(dataFormat.getBufferPool());
+			} else {
+				this.bytes = new TruncatableByteArrayOutputStream(initialCapacity);
+				this.segments = null;
+			}
+			this.writer = new OutputStreamWriter(output());
+		}
+
+		private void append(Exchange exchange) throws Exception {
+			// the writer is flushed after every message, so this is where the previous message ends
+			long mark = size();
+			try {
+				writer.write(count == 0 ? '[' : ',');
+				dataFormat.marshal(exchange, exchange.getIn().getBody(), writer);
+				// flush the encoder so that the byte size threshold can be checked
+				writer.flush();
+			} catch (Exception e) {
+				// drop the separator and whatever the failed message wrote, including what is still buffered by the writer
+				if (bytes != null) {
+					bytes.truncate((int) mark);
+				} else {
+					segments.truncate(mark);
+				}
+				writer = new OutputStreamWriter(output());
+				throw e;
+			}
+			count++;
+		}
+
+		private OutputStream output() {
+			return bytes != null ? bytes : segments;
+		}
+
+		private long size() {
+			return bytes != null ? bytes.size() : segments.size();
+		}
+
+		private Object close() throws IOException {
+			if (count == 0) {
+				writer.write('[');
+			}
+			writer.write(']');
+			writer.flush();
+			return bytes != null ? bytes.toByteArray() : segments.toInputStream();
+		}
+	}
+
+	private static final class TruncatableByteArrayOutputStream extends ByteArrayOutputStream {
+		private TruncatableByteArrayOutputStream(int initialCapacity) {
+			super(initialCapacity);
+		}
+
+		private void truncate(int size) {
+			count = size;
+		}
+	}
+
+}
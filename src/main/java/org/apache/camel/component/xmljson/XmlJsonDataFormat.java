@@ -16,40 +16,157 @@
  */
 package org.apache.camel.component.xmljson;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.sax.SAXSource;
 
 import net.sf.json.JSON;
 import net.sf.json.JSONSerializer;
 import net.sf.json.xml.XMLSerializer;
 
+import org.apache.camel.CamelContext;
+import org.apache.camel.CamelContextAware;
 import org.apache.camel.Exchange;
+import org.apache.camel.component.file.GenericFile;
 import org.apache.camel.component.xmljson.XmlJsonDataFormatConfig.NamespacesPerElementMapping;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.DefaultExchange;
 import org.apache.camel.spi.DataFormat;
+import org.apache.camel.support.ServiceSupport;
+import org.apache.camel.util.IOHelper;
+import org.apache.camel.util.ObjectHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
 
 /**
  * A <a href="http://camel.apache.org/data-format.html">data format</a> ({@link DataFormat})
  * using <a href="http://json-lib.sourceforge.net/">json-lib</a> to convert between XML and JSON directly.
+ * When started, it can optionally warm itself up by converting sample documents (see
+ * {@link XmlJsonDataFormatConfig#setWarmUp(Boolean)}), and data formats with identical options can share one serializer
+ * (see {@link XmlJsonDataFormatConfig#setSharedEngine(Boolean)}). Both can also be enabled with the
+ * {@link #WARM_UP_PROPERTY} and {@link #SHARED_ENGINE_PROPERTY} system properties, which is the way to go for data
+ * formats resolved as <tt>xml-json</tt> through <tt>META-INF/services</tt>, as they have no configuration.
  * @author Raul Kripalani
  */
-public class XmlJsonDataFormat implements DataFormat {
+public class XmlJsonDataFormat extends ServiceSupport implements DataFormat, CamelContextAware {
+	
+	/**
+	 * Exchange property recording the {@link MarshalStrategyEnum} used by the last marshal operation
+	 */
+	public static final String MARSHAL_STRATEGY = "CamelXmlJsonMarshalStrategy";
+	
+	/**
+	 * Exchange property recording how long the last marshal operation took, in nanoseconds
+	 */
+	public static final String MARSHAL_DURATION = "CamelXmlJsonMarshalDuration";
+	
+	/**
+	 * Payloads of known length smaller than this number of bytes are converted from a String rather than from a stream
+	 */
+	public static final long DEFAULT_STREAMING_THRESHOLD = 64 * 1024;
+	
+	/**
+	 * Number of times each sample document is converted during the warm-up, unless configured otherwise
+	 */
+	public static final int DEFAULT_WARM_UP_ITERATIONS = 100;
+	
+	/**
+	 * System property enabling the warm-up when it is not set in the configuration, e.g. for data formats resolved as
+	 * <tt>xml-json</tt> through <tt>META-INF/services</tt>, which are created without a configuration
+	 */
+	public static final String WARM_UP_PROPERTY = "camel.xmljson.warmUp";
+	
+	/**
+	 * System property holding comma separated warm-up samples when they are not set in the configuration
+	 */
+	public static final String WARM_UP_SAMPLES_PROPERTY = "camel.xmljson.warmUpSamples";
+	
+	/**
+	 * System property enabling the shared engine when it is not set in the configuration
+	 */
+	public static final String SHARED_ENGINE_PROPERTY = "camel.xmljson.sharedEngine";
+	
+	/**
+	 * Built-in warm-up sample, exercising nested objects, arrays, attributes, typed values and escaped text
+	 */
+	private static final String WARM_UP_SAMPLE = "<order id=\"42\" priority=\"high\"><customer><name>Jane &amp; John</name>"
+		+ "<email>jane@example.org</email></customer><lines><line sku=\"A-1\"><qty>2</qty><price>9.99</price>"
+		+ "<gift>true</gift></line><line sku=\"B-2\"><qty>1</qty><price>120</price><gift>false</gift></line></lines>"
+		+ "<notes>&lt;fragile&gt; \"handle\" with care</notes><coupon/></order>";
+	
+	private static final transient Logger LOG = LoggerFactory.getLogger(XmlJsonDataFormat.class);
+	
+	/**
+	 * Serializers shared by data formats with identical serializer options, keyed by {@link #getEngineKey()}. They are
+	 * kept for the lifetime of this class, as there is one per distinct configuration only
+	 */
+	private static final ConcurrentMap<String, XMLSerializer> SHARED_ENGINES = new ConcurrentHashMap<String, XMLSerializer>();
+	// warm-ups of shared engines which completed, and the locks serializing them, keyed by getWarmUpKey()
+	private static final Set<String> WARMED_UP_ENGINES = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	private static final ConcurrentMap<String, Object> WARM_UP_LOCKS = new ConcurrentHashMap<String, Object>();
+	
+	/**
+	 * Document builders are not thread-safe, each thread creates the DOM results with its own
+	 */
+	private static final ThreadLocal<DocumentBuilder> DOCUMENT_BUILDERS = new ThreadLocal<DocumentBuilder>() {
+		@Override
+		protected DocumentBuilder initialValue() {
+			DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+			factory.setNamespaceAware(true);
+			try {
+				return factory.newDocumentBuilder();
+			} catch (ParserConfigurationException e) {
+				throw ObjectHelper.wrapRuntimeCamelException(e);
+			}
+		}
+	};
 
     private final XMLSerializer serializer;
+    private final BufferPool bufferPool;
     private XmlJsonDataFormatConfig config;
+    private CamelContext camelContext;
 
 	public XmlJsonDataFormat() {
-    	serializer = initSerializer();
+    	serializer = initEngine();
+    	bufferPool = null;
     }
     
 	public XmlJsonDataFormat(XmlJsonDataFormatConfig config) {
 		this.config = config;
-		this.serializer = initSerializer();
+		this.serializer = initEngine();
+		this.bufferPool = initBufferPool();
+		if (bufferPool != null && config.getUnmarshalResultType() != null && config.getUnmarshalResultType() != UnmarshalResultTypeEnum.STRING) {
+			throw new IllegalArgumentException("Pooled buffers only apply to the STRING unmarshal result type, not to " + config.getUnmarshalResultType());
+		}
 	}
 	
 	public XMLSerializer initSerializer() {
-		XMLSerializer serializer = new XMLSerializer();
+		XMLSerializer serializer = new NamespaceTrackingXMLSerializer();
 		
 		if (config == null)
 			return serializer;
@@ -116,6 +233,63 @@ public class XmlJsonDataFormat implements DataFormat {
 		return serializer;
 	}
 	
+	/**
+	 * Returns the serializer shared by all data formats with the same serializer options when the engine is shared,
+	 * otherwise a new one
+	 */
+	private XMLSerializer initEngine() {
+		if (!isSharedEngine()) {
+			return initSerializer();
+		}
+		String key = getEngineKey();
+		XMLSerializer answer = SHARED_ENGINES.get(key);
+		if (answer == null) {
+			XMLSerializer created = initSerializer();
+			answer = SHARED_ENGINES.putIfAbsent(key, created);
+			if (answer == null) {
+				answer = created;
+			}
+		}
+		return answer;
+	}
+	
+	private boolean isSharedEngine() {
+		return config != null && config.getSharedEngine() != null ? config.getSharedEngine() : Boolean.getBoolean(SHARED_ENGINE_PROPERTY);
+	}
+	
+	/**
+	 * A canonical representation of every option applied by {@link #initSerializer()}, so that data formats configured
+	 * alike resolve to the same shared serializer
+	 */
+	private String getEngineKey() {
+		if (config == null) {
+			// json-lib's defaults, which differ from those of an empty configuration
+			return "default";
+		}
+		StringBuilder key = new StringBuilder();
+		key.append(config.getForceTopLevelObject()).append('|').append(config.getNamespaceLenient())
+			.append('|').append(config.getRootName()).append('|').append(config.getElementName())
+			.append('|').append(config.getArrayName()).append('|').append(config.getExpandableProperties())
+			.append('|').append(config.getSkipWhitespace()).append('|').append(config.getTrimSpaces())
+			.append('|').append(config.getSkipNamespaces()).append('|').append(config.getRemoveNamespacePrefixes())
+			.append('|').append(config.getTypeHints());
+		if (config.getNamespaceMappings() != null) {
+			for (NamespacesPerElementMapping nsMapping : config.getNamespaceMappings()) {
+				key.append('|').append(nsMapping.element).append('=').append(new TreeMap<String, String>(nsMapping.namespaces));
+			}
+		}
+		return key.toString();
+	}
+	
+	private BufferPool initBufferPool() {
+		if (config.getPooledBuffers() == null || !config.getPooledBuffers()) {
+			return null;
+		}
+		int segmentSize = config.getBufferSegmentSize() == null ? BufferPool.DEFAULT_SEGMENT_SIZE : config.getBufferSegmentSize();
+		boolean direct = config.getDirectBuffers() != null && config.getDirectBuffers();
+		return new BufferPool(segmentSize, BufferPool.DEFAULT_MAX_POOLED_SEGMENTS, direct);
+	}
+	
 	/**
 	 * Marshal from XML to JSON
 	 * @param exchange
@@ -125,27 +299,124 @@ public class XmlJsonDataFormat implements DataFormat {
 	 */
 	@Override
 	public void marshal(Exchange exchange, Object graph, OutputStream stream) throws Exception {
-		boolean streamTreatment = true;
-		// try to process as an InputStream if it's not a String
-		Object xml = graph instanceof String ? null : exchange.getContext().getTypeConverter().convertTo(InputStream.class, graph);
-		// if conversion to InputStream was unfeasible, fall back to String
+		OutputStreamWriter osw = new OutputStreamWriter(stream);
+		marshal(exchange, graph, osw);
+		osw.flush();
+	}
+	
+	/**
+	 * Marshal from XML to JSON, appending the JSON text to the given writer. The writer is neither flushed nor closed,
+	 * so that callers such as {@link XmlJsonAggregationStrategy} can accumulate several conversions into the same output
+	 * @param exchange
+	 * @param graph
+	 * @param writer
+	 * @throws Exception
+	 */
+	public void marshal(Exchange exchange, Object graph, Writer writer) throws Exception {
+		long start = System.nanoTime();
+		MarshalStrategyEnum strategy = selectMarshalStrategy(exchange, graph);
+		
+		Object xml = null;
+		int sizeHint = -1;
+		if (strategy == MarshalStrategyEnum.BYTES) {
+			byte[] bytes = exchange.getContext().getTypeConverter().mandatoryConvertTo(byte[].class, exchange, graph);
+			xml = new ByteArrayInputStream(bytes);
+			sizeHint = bytes.length;
+		} else if (!(graph instanceof String)) {
+			xml = exchange.getContext().getTypeConverter().convertTo(InputStream.class, exchange, graph);
+		}
+		// if conversion to InputStream was unfeasible or not desired, fall back to String
 		if (xml == null) {
 			xml = exchange.getContext().getTypeConverter().mandatoryConvertTo(String.class, graph);
-			streamTreatment = false;
+			if (strategy == MarshalStrategyEnum.STREAM) {
+				strategy = MarshalStrategyEnum.STRING;
+			}
 		}
 		
-		JSON json;
 		// perform the marshaling to JSON
-		if (streamTreatment) {
-			json = serializer.readFromStream((InputStream) xml);
+		if (strategy == MarshalStrategyEnum.SPOOL) {
+			marshalSpooling(xml, writer);
 		} else {
-			json = serializer.read((String) xml);
+			JSON json;
+			if (xml instanceof InputStream) {
+				// json-lib would decode the stream with the platform charset rather than the encoding of the document
+				json = serializer.read(XmlEncodingDetector.readText((InputStream) xml, sizeHint));
+			} else {
+				json = serializer.read((String) xml);
+			}
+			XmlJsonEscaping.writeJson(json, writer);
 		}
 		
-		OutputStreamWriter osw = new OutputStreamWriter(stream);
-		json.write(osw);
-		osw.flush();
+		long duration = System.nanoTime() - start;
+		exchange.setProperty(MARSHAL_STRATEGY, strategy);
+		exchange.setProperty(MARSHAL_DURATION, duration);
+		if (LOG.isTraceEnabled()) {
+			LOG.trace("Marshalled {} to JSON using the {} strategy in {} ns", new Object[] {graph.getClass().getName(), strategy, duration});
+		}
+	}
+	
+	/**
+	 * Chooses how to feed the XML payload to json-lib, based on cheap signals only: the body type and the payload length,
+	 * when it can be known without reading the body. String payloads are parsed as they are, payloads of known size
+	 * below the streaming threshold are read into a byte array, everything else (large or of unknown size) is decoded
+	 * from a stream, or spooled when a spool threshold is configured. Byte-backed payloads are decoded with the encoding
+	 * declared by the document in both cases
+	 * @param exchange
+	 * @param graph
+	 * @return the strategy to use
+	 */
+	protected MarshalStrategyEnum selectMarshalStrategy(Exchange exchange, Object graph) {
+		Long spoolThreshold = config == null ? null : config.getSpoolThreshold();
+		// the payload is already in memory, converting it to a stream would only add a copy
+		if (graph instanceof String) {
+			return spoolThreshold != null && ((String) graph).length() > spoolThreshold ? MarshalStrategyEnum.SPOOL : MarshalStrategyEnum.STRING;
+		}
+		
+		long threshold = config == null || config.getStreamingThreshold() == null ? DEFAULT_STREAMING_THRESHOLD : config.getStreamingThreshold();
+		long length = getPayloadLength(exchange, graph);
+		if (length >= 0 && length < threshold) {
+			return MarshalStrategyEnum.BYTES;
+		}
+		return spoolThreshold != null ? MarshalStrategyEnum.SPOOL : MarshalStrategyEnum.STREAM;
+	}
+	
+	private void marshalSpooling(Object xml, Writer writer) throws Exception {
+		File directory = config.getSpoolDirectory() == null ? null : new File(config.getSpoolDirectory());
+		TextSpool spool = new TextSpool(config.getSpoolThreshold(), directory);
+		try {
+			String filtered;
+			if (xml instanceof InputStream) {
+				filtered = spool.filter((InputStream) xml);
+			} else {
+				filtered = spool.filter(new StringReader((String) xml));
+			}
+			JSON json = serializer.read(filtered);
+			Writer spoolWriter = spool.createWriter(writer);
+			XmlJsonEscaping.writeJson(json, spoolWriter);
+			spoolWriter.flush();
+		} finally {
+			spool.close();
+		}
+	}
+	
+	private long getPayloadLength(Exchange exchange, Object graph) {
+		if (graph instanceof byte[]) {
+			return ((byte[]) graph).length;
+		} else if (graph instanceof File) {
+			return ((File) graph).length();
+		} else if (graph instanceof GenericFile) {
+			return ((GenericFile<?>) graph).getFileLength();
+		} else if (!(graph instanceof InputStream)) {
+			// the length headers may have been left over by an earlier step which produced another body
+			return -1;
+		}
 		
+		// the length of a stream is only known from the headers of the endpoint which opened it
+		Long length = exchange.getIn().getHeader(Exchange.FILE_LENGTH, Long.class);
+		if (length == null) {
+			length = exchange.getIn().getHeader(Exchange.CONTENT_LENGTH, Long.class);
+		}
+		return length == null ? -1 : length;
 	}
 	
 	/**
@@ -166,7 +437,43 @@ public class XmlJsonDataFormat implements DataFormat {
 			toConvert = JSONSerializer.toJSON(jsonString);
 		}
 		
-		return convertToXMLUsingEncoding(toConvert);
+		switch (getUnmarshalResultType()) {
+		case DOCUMENT:
+			return convertToDocument(toConvert);
+		case DOM_SOURCE:
+			return new DOMSource(convertToDocument(toConvert));
+		case SAX_SOURCE:
+			return new SAXSource(createXMLReader(toConvert), new InputSource());
+		default:
+			break;
+		}
+		
+		if (bufferPool == null) {
+			return convertToXMLUsingEncoding(toConvert);
+		}
+		
+		// write the XML straight into pooled segments, which go back to the pool once the resulting stream is read
+		SegmentedOutputStream os = new SegmentedOutputStream(bufferPool);
+		Writer writer = new OutputStreamWriter(os, getEncoding());
+		writeXML(toConvert, writer);
+		writer.flush();
+		return os.toInputStream();
+	}
+	
+	/**
+	 * Builds the DOM of the XML representation of the JSON value from SAX events generated by a {@link JsonXMLReader},
+	 * without any intermediate XML text
+	 */
+	private Document convertToDocument(JSON json) throws IOException, SAXException {
+		DomBuilder builder = new DomBuilder(DOCUMENT_BUILDERS.get().newDocument());
+		JsonXMLReader reader = createXMLReader(json);
+		reader.setContentHandler(builder);
+		reader.parse(new InputSource());
+		return builder.getDocument();
+	}
+	
+	private JsonXMLReader createXMLReader(JSON json) {
+		return new JsonXMLReader(json, serializer, config == null ? null : config.getNamespaceMappings());
 	}
 	
 	private String convertToXMLUsingEncoding(JSON json) {
@@ -177,8 +484,172 @@ public class XmlJsonDataFormat implements DataFormat {
 		}
 	}
 	
+	/**
+	 * Writes the XML text of the JSON value, as json-lib's <tt>XMLSerializer.write()</tt> would, from the events of a
+	 * {@link JsonXMLReader} escaped with {@link XmlJsonEscaping}. Only used for pooled buffers, where the text goes
+	 * straight into the segments rather than into a String
+	 */
+	private void writeXML(JSON json, Writer writer) throws IOException, SAXException {
+		JsonXMLReader reader = createXMLReader(json);
+		reader.setContentHandler(new XmlTextWriter(writer, getEncoding()));
+		reader.parse(new InputSource());
+	}
+	
+	private String getEncoding() {
+		return config == null || config.getEncoding() == null ? "UTF-8" : config.getEncoding();
+	}
+	
+	@Override
+	protected void doStart() throws Exception {
+		boolean enabled = config != null && config.getWarmUp() != null ? config.getWarmUp() : Boolean.getBoolean(WARM_UP_PROPERTY);
+		if (!enabled) {
+			return;
+		}
+		if (!isSharedEngine()) {
+			warmUp();
+			return;
+		}
+		
+		// a shared engine only needs warming up once for the same samples and result type; data formats starting
+		// concurrently wait for the warm-up in progress rather than serving traffic cold
+		String key = getWarmUpKey();
+		Object lock = WARM_UP_LOCKS.get(key);
+		if (lock == null) {
+			Object created = new Object();
+			lock = WARM_UP_LOCKS.putIfAbsent(key, created);
+			if (lock == null) {
+				lock = created;
+			}
+		}
+		synchronized (lock) {
+			if (WARMED_UP_ENGINES.contains(key)) {
+				LOG.debug("Skipping warm-up, the shared engine has already been warmed up with the same samples");
+				return;
+			}
+			warmUp();
+			// only once it succeeded, so that a failed warm-up is retried on the next start
+			WARMED_UP_ENGINES.add(key);
+		}
+	}
+	
+	private String getWarmUpKey() {
+		return getEngineKey() + "|" + getUnmarshalResultType() + "|" + getEncoding() + "|" + getWarmUpSamples();
+	}
+	
+	private UnmarshalResultTypeEnum getUnmarshalResultType() {
+		return config == null || config.getUnmarshalResultType() == null ? UnmarshalResultTypeEnum.STRING : config.getUnmarshalResultType();
+	}
+	
+	private List<String> getWarmUpSamples() {
+		if (config != null && config.getWarmUpSamples() != null && !config.getWarmUpSamples().isEmpty()) {
+			return config.getWarmUpSamples();
+		}
+		String samples = System.getProperty(WARM_UP_SAMPLES_PROPERTY);
+		return samples == null || samples.trim().length() == 0 ? Collections.singletonList(WARM_UP_SAMPLE) : Arrays.asList(samples.split(","));
+	}
+	
+	@Override
+	protected void doStop() throws Exception {
+		// noop
+	}
+	
+	/**
+	 * Drives the warm-up samples through {@link #marshal(Exchange, Object, OutputStream)} and
+	 * {@link #unmarshal(Exchange, InputStream)} with exchanges of their own: every XML sample (or the XML json-lib writes
+	 * for a JSON sample) is marshalled as a String, a byte array and a stream of unknown length, so that each marshal
+	 * strategy applicable to the configuration runs, and the resulting JSON is unmarshalled to the configured result
+	 * type, which is consumed like a route would
+	 * @throws Exception if a sample cannot be loaded or converted, which fails the start of the route
+	 */
+	protected void warmUp() throws Exception {
+		long start = System.nanoTime();
+		List<String> samples = getWarmUpSamples();
+		List<String> documents = new ArrayList<String>(samples.size());
+		for (String sample : samples) {
+			String document = loadWarmUpSample(sample);
+			documents.add(document.startsWith("<") ? document : convertToXMLUsingEncoding(JSONSerializer.toJSON(document)));
+		}
+		int iterations = config == null || config.getWarmUpIterations() == null ? DEFAULT_WARM_UP_ITERATIONS : config.getWarmUpIterations();
+		
+		// data formats started outside of a route have no CamelContext to create exchanges with
+		CamelContext context = camelContext;
+		if (context == null) {
+			context = new DefaultCamelContext();
+			context.start();
+		}
+		try {
+			for (String xml : documents) {
+				byte[] bytes = xml.getBytes(XmlEncodingDetector.getDeclaredEncoding(xml));
+				for (int i = 0; i < iterations; i++) {
+					warmUp(context, xml);
+					warmUp(context, bytes);
+					warmUp(context, new ByteArrayInputStream(bytes));
+				}
+			}
+		} finally {
+			if (context != camelContext) {
+				context.stop();
+			}
+		}
+		LOG.info("Warmed up the xml-json data format with {} sample(s) x {} iteration(s) in {} ms",
+				new Object[] {samples.size(), iterations, (System.nanoTime() - start) / 1000000});
+	}
+	
+	private void warmUp(CamelContext context, Object xml) throws Exception {
+		Exchange exchange = new DefaultExchange(context);
+		exchange.getIn().setBody(xml);
+		ByteArrayOutputStream json = new ByteArrayOutputStream();
+		marshal(exchange, xml, json);
+		
+		exchange = new DefaultExchange(context);
+		exchange.getIn().setBody(json.toByteArray());
+		Object result = unmarshal(exchange, new ByteArrayInputStream(json.toByteArray()));
+		if (result instanceof SAXSource) {
+			SAXSource source = (SAXSource) result;
+			source.getXMLReader().setContentHandler(new DefaultHandler());
+			source.getXMLReader().parse(source.getInputSource());
+		} else if (result instanceof InputStream) {
+			// reading pooled results to the end puts their segments back in the pool
+			IOHelper.copy((InputStream) result, new ByteArrayOutputStream());
+		}
+	}
+	
+	/**
+	 * @return the sample itself if it is an XML or JSON document, otherwise the content of the classpath resource it
+	 *         points to
+	 */
+	private static String loadWarmUpSample(String sample) throws IOException {
+		String trimmed = sample.trim();
+		if (trimmed.startsWith("<") || trimmed.startsWith("{") || trimmed.startsWith("[")) {
+			return trimmed;
+		}
+		String name = trimmed.startsWith("classpath:") ? trimmed.substring("classpath:".length()) : trimmed;
+		InputStream is = ObjectHelper.loadResourceAsStream(name);
+		ObjectHelper.notNull(is, "warm-up sample resource " + name);
+		try {
+			return IOHelper.loadText(is).trim();
+		} finally {
+			IOHelper.close(is);
+		}
+	}
+	
+	public CamelContext getCamelContext() {
+		return camelContext;
+	}
+	
+	/**
+	 * The context the warm-up exchanges are created with, injected by the marshal and unmarshal processors
+	 */
+	public void setCamelContext(CamelContext camelContext) {
+		this.camelContext = camelContext;
+	}
+	
 	public XMLSerializer getSerializer() {
 		return serializer;
 	}
+	
+	public BufferPool getBufferPool() {
+		return bufferPool;
+	}
 
 }
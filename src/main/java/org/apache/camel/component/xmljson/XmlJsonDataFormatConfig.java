@@ -20,6 +20,17 @@ public class XmlJsonDataFormatConfig {
 	private Boolean removeNamespacePrefixes;
 	private List<String> expandableProperties;
 	private TypeHintsEnum typeHints;
+	private Long streamingThreshold;
+	private Long spoolThreshold;
+	private String spoolDirectory;
+	private Boolean pooledBuffers;
+	private Boolean directBuffers;
+	private Integer bufferSegmentSize;
+	private UnmarshalResultTypeEnum unmarshalResultType;
+	private Boolean warmUp;
+	private Integer warmUpIterations;
+	private List<String> warmUpSamples;
+	private Boolean sharedEngine;
 
 	public XmlJsonDataFormatConfig() {
 	}
@@ -131,6 +142,142 @@ public class XmlJsonDataFormatConfig {
 		return removeNamespacePrefixes;
 	}
 
+	public Long getStreamingThreshold() {
+		return streamingThreshold;
+	}
+
+	/**
+	 * Size in bytes below which payloads of known length are read into a byte array instead of decoded from a stream, defaults to
+	 * {@link XmlJsonDataFormat#DEFAULT_STREAMING_THRESHOLD}
+	 */
+	public void setStreamingThreshold(Long streamingThreshold) {
+		this.streamingThreshold = streamingThreshold;
+	}
+
+	public Long getSpoolThreshold() {
+		return spoolThreshold;
+	}
+
+	/**
+	 * Length in characters above which a single text node is spooled to a temporary file while marshalling, instead of
+	 * being held in memory. Not set by default, i.e. text nodes are never spooled. Text nodes with a type hint other
+	 * than <tt>string</tt> are never spooled.
+	 * <p/>
+	 * Spooling keeps the XML and JSON models of the conversion small, but not its result: the marshal processor collects
+	 * the JSON output in a byte array, which therefore still holds every spooled value
+	 */
+	public void setSpoolThreshold(Long spoolThreshold) {
+		this.spoolThreshold = spoolThreshold;
+	}
+
+	public String getSpoolDirectory() {
+		return spoolDirectory;
+	}
+
+	/**
+	 * Directory for the spool files, defaults to the system temporary directory
+	 */
+	public void setSpoolDirectory(String spoolDirectory) {
+		this.spoolDirectory = spoolDirectory;
+	}
+
+	public Boolean getPooledBuffers() {
+		return pooledBuffers;
+	}
+
+	/**
+	 * Whether unmarshal results (and aggregated batches) are written into pooled buffer segments and returned as a
+	 * {@link SegmentedInputStream}, whose segments go back to the pool once it has been read or closed. Only supported with the
+	 * <tt>STRING</tt> unmarshal result type
+	 */
+	public void setPooledBuffers(Boolean pooledBuffers) {
+		this.pooledBuffers = pooledBuffers;
+	}
+
+	public Boolean getDirectBuffers() {
+		return directBuffers;
+	}
+
+	/**
+	 * Whether pooled buffer segments are allocated off-heap, as direct byte buffers
+	 */
+	public void setDirectBuffers(Boolean directBuffers) {
+		this.directBuffers = directBuffers;
+	}
+
+	public Integer getBufferSegmentSize() {
+		return bufferSegmentSize;
+	}
+
+	/**
+	 * Size in bytes of the pooled buffer segments, defaults to {@link BufferPool#DEFAULT_SEGMENT_SIZE}
+	 */
+	public void setBufferSegmentSize(Integer bufferSegmentSize) {
+		this.bufferSegmentSize = bufferSegmentSize;
+	}
+
+	public UnmarshalResultTypeEnum getUnmarshalResultType() {
+		return unmarshalResultType;
+	}
+
+	/**
+	 * The type of the unmarshal result, one of the {@link UnmarshalResultTypeEnum} names, defaults to <tt>STRING</tt>
+	 */
+	public void setUnmarshalResultType(String unmarshalResultType) {
+		this.unmarshalResultType = UnmarshalResultTypeEnum.valueOf(unmarshalResultType);
+	}
+
+	public Boolean getWarmUp() {
+		return warmUp;
+	}
+
+	/**
+	 * Whether the data format converts sample documents back and forth when it is started, so that class loading, JIT
+	 * compilation and json-lib/XOM static initialization happen before the first message rather than during it. Defaults
+	 * to the {@link XmlJsonDataFormat#WARM_UP_PROPERTY} system property
+	 */
+	public void setWarmUp(Boolean warmUp) {
+		this.warmUp = warmUp;
+	}
+
+	public Integer getWarmUpIterations() {
+		return warmUpIterations;
+	}
+
+	/**
+	 * How many times each warm-up sample is converted, defaults to {@link XmlJsonDataFormat#DEFAULT_WARM_UP_ITERATIONS}
+	 */
+	public void setWarmUpIterations(Integer warmUpIterations) {
+		this.warmUpIterations = warmUpIterations;
+	}
+
+	public List<String> getWarmUpSamples() {
+		return warmUpSamples;
+	}
+
+	/**
+	 * Sample documents for the warm-up, each one either an XML or JSON document or the classpath location of one
+	 * (optionally prefixed with <tt>classpath:</tt>). Defaults to the samples listed in the
+	 * {@link XmlJsonDataFormat#WARM_UP_SAMPLES_PROPERTY} system property, or else to a built-in sample
+	 */
+	public void setWarmUpSamples(List<String> warmUpSamples) {
+		this.warmUpSamples = warmUpSamples;
+	}
+
+	public Boolean getSharedEngine() {
+		return sharedEngine;
+	}
+
+	/**
+	 * Whether the json-lib serializer is shared with every other data format having the same serializer options,
+	 * instead of each data format creating its own. Shared serializers must not be reconfigured through
+	 * {@link XmlJsonDataFormat#getSerializer()}. Defaults to the {@link XmlJsonDataFormat#SHARED_ENGINE_PROPERTY} system
+	 * property
+	 */
+	public void setSharedEngine(Boolean sharedEngine) {
+		this.sharedEngine = sharedEngine;
+	}
+
 	public static class NamespacesPerElementMapping {
 		public String element;
 		public Map<String, String> namespaces;
@@ -0,0 +1,251 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.xmljson;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Iterator;
+
+import net.sf.json.JSON;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONNull;
+import net.sf.json.JSONObject;
+import net.sf.json.util.JSONUtils;
+
+/**
+ * Escaping routines for the output stages of {@link XmlJsonDataFormat}.
+ * <p/>
+ * Rather than deciding what to do with every character and appending characters one at a time, the routines scan
+ * runs of characters which need no escaping using a lookup table indexed by the ASCII code, and copy each run to the
+ * writer in one go. Characters outside the ASCII range never need escaping, so they are part of the runs too and
+ * only the rare ASCII special characters break them.
+ * <p/>
+ * The JSON routines produce exactly the same output as json-lib's <tt>JSONUtils.quote()</tt> and <tt>JSON.write()</tt>.
+ * @author Raul Kripalani
+ */
+public final class XmlJsonEscaping {
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	// replacement of every ASCII character in a JSON string, null when the character is copied as-is
+	private static final String[] JSON_REPLACEMENTS = new String[128];
+	// replacement of every ASCII character in XML text and in XML attribute values, as written by XOM for json-lib
+	private static final String[] XML_TEXT_REPLACEMENTS = new String[128];
+	private static final String[] XML_ATTRIBUTE_REPLACEMENTS = new String[128];
+
+	static {
+		for (char c = 0; c < ' '; c++) {
+			JSON_REPLACEMENTS[c] = "\\u00" + HEX[c >> 4] + HEX[c & 0xF];
+		}
+		JSON_REPLACEMENTS['\b'] = "\\b";
+		JSON_REPLACEMENTS['\t'] = "\\t";
+		JSON_REPLACEMENTS['\n'] = "\\n";
+		JSON_REPLACEMENTS['\f'] = "\\f";
+		JSON_REPLACEMENTS['\r'] = "\\r";
+		JSON_REPLACEMENTS['"'] = "\\\"";
+		JSON_REPLACEMENTS['\\'] = "\\\\";
+		// only escaped after a '<', see escapeJson()
+		JSON_REPLACEMENTS['/'] = "\\/";
+
+		XML_TEXT_REPLACEMENTS['&'] = "&amp;";
+		XML_TEXT_REPLACEMENTS['<'] = "&lt;";
+		XML_TEXT_REPLACEMENTS['>'] = "&gt;";
+		XML_TEXT_REPLACEMENTS['\r'] = "&#x0D;";
+		System.arraycopy(XML_TEXT_REPLACEMENTS, 0, XML_ATTRIBUTE_REPLACEMENTS, 0, 128);
+		XML_ATTRIBUTE_REPLACEMENTS['"'] = "&quot;";
+		XML_ATTRIBUTE_REPLACEMENTS['\t'] = "&#x09;";
+		XML_ATTRIBUTE_REPLACEMENTS['\n'] = "&#x0A;";
+	}
+
+	private XmlJsonEscaping() {
+	}
+
+	/**
+	 * Writes a JSON value the way json-lib's <tt>JSON.write()</tt> does, escaping its keys and strings with
+	 * {@link #escapeJson(String, Writer)}
+	 * @param json the JSON value
+	 * @param out the writer
+	 * @throws IOException
+	 */
+	public static void writeJson(JSON json, Writer out) throws IOException {
+		if (json instanceof JSONObject) {
+			JSONObject object = (JSONObject) json;
+			if (object.isNullObject()) {
+				out.write("null");
+				return;
+			}
+			out.write('{');
+			boolean first = true;
+			for (Iterator<?> keys = object.keys(); keys.hasNext();) {
+				if (!first) {
+					out.write(',');
+				}
+				Object key = keys.next();
+				writeString(key.toString(), out);
+				out.write(':');
+				writeValue(object.get(key), out);
+				first = false;
+			}
+			out.write('}');
+		} else if (json instanceof JSONArray) {
+			out.write('[');
+			boolean first = true;
+			for (Iterator<?> values = ((JSONArray) json).iterator(); values.hasNext();) {
+				if (!first) {
+					out.write(',');
+				}
+				writeValue(values.next(), out);
+				first = false;
+			}
+			out.write(']');
+		} else {
+			json.write(out);
+		}
+	}
+
+	private static void writeValue(Object value, Writer out) throws IOException {
+		if (value instanceof JSON && !(value instanceof JSONNull)) {
+			writeJson((JSON) value, out);
+		} else if (value instanceof String) {
+			writeString((String) value, out);
+		} else {
+			out.write(JSONUtils.valueToString(value));
+		}
+	}
+
+	private static void writeString(String value, Writer out) throws IOException {
+		// json-lib writes functions unquoted
+		if (JSONUtils.isFunction(value)) {
+			out.write(value);
+			return;
+		}
+		out.write('"');
+		escapeJson(value, out);
+		out.write('"');
+	}
+
+	/**
+	 * Writes the string escaped as the contents of a JSON string, without the surrounding quotes
+	 * @param value the string
+	 * @param out the writer
+	 * @throws IOException
+	 */
+	public static void escapeJson(String value, Writer out) throws IOException {
+		int length = value.length();
+		int runStart = 0;
+		char previous = 0;
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			if (c < 128) {
+				String replacement = JSON_REPLACEMENTS[c];
+				if (replacement != null && (c != '/' || previous == '<')) {
+					out.write(value, runStart, i - runStart);
+					out.write(replacement);
+					runStart = i + 1;
+				}
+			}
+			previous = c;
+		}
+		out.write(value, runStart, length - runStart);
+	}
+
+	/**
+	 * Writes a chunk of characters escaped as part of the contents of a JSON string, for strings written in several chunks
+	 * @param chars the characters
+	 * @param offset the offset of the chunk
+	 * @param length the length of the chunk
+	 * @param previous the last character of the previous chunk, or 0 for the first chunk
+	 * @param out the writer
+	 * @return the last character of this chunk, to pass along with the next chunk
+	 * @throws IOException
+	 */
+	public static char escapeJson(char[] chars, int offset, int length, char previous, Writer out) throws IOException {
+		int end = offset + length;
+		int runStart = offset;
+		for (int i = offset; i < end; i++) {
+			char c = chars[i];
+			if (c < 128) {
+				String replacement = JSON_REPLACEMENTS[c];
+				if (replacement != null && (c != '/' || previous == '<')) {
+					out.write(chars, runStart, i - runStart);
+					out.write(replacement);
+					runStart = i + 1;
+				}
+			}
+			previous = c;
+		}
+		out.write(chars, runStart, end - runStart);
+		return previous;
+	}
+
+	/**
+	 * Writes the string escaped as XML character data
+	 * @param value the string
+	 * @param out the writer
+	 * @throws IOException
+	 */
+	public static void escapeXmlText(String value, Writer out) throws IOException {
+		escapeXml(value, XML_TEXT_REPLACEMENTS, out);
+	}
+
+	/**
+	 * Writes the string escaped as the value of an XML attribute delimited by double quotes
+	 * @param value the string
+	 * @param out the writer
+	 * @throws IOException
+	 */
+	public static void escapeXmlAttribute(String value, Writer out) throws IOException {
+		escapeXml(value, XML_ATTRIBUTE_REPLACEMENTS, out);
+	}
+
+	private static void escapeXml(String value, String[] replacements, Writer out) throws IOException {
+		int length = value.length();
+		int runStart = 0;
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			if (c < 128 && replacements[c] != null) {
+				out.write(value, runStart, i - runStart);
+				out.write(replacements[c]);
+				runStart = i + 1;
+			}
+		}
+		out.write(value, runStart, length - runStart);
+	}
+
+	/**
+	 * Writes a chunk of characters escaped as XML character data
+	 * @param chars the characters
+	 * @param offset the offset of the chunk
+	 * @param length the length of the chunk
+	 * @param out the writer
+	 * @throws IOException
+	 */
+	public static void escapeXmlText(char[] chars, int offset, int length, Writer out) throws IOException {
+		int end = offset + length;
+		int runStart = offset;
+		for (int i = offset; i < end; i++) {
+			char c = chars[i];
+			if (c < 128 && XML_TEXT_REPLACEMENTS[c] != null) {
+				out.write(chars, runStart, i - runStart);
+				out.write(XML_TEXT_REPLACEMENTS[c]);
+				runStart = i + 1;
+			}
+		}
+		out.write(chars, runStart, end - runStart);
+	}
+
+}
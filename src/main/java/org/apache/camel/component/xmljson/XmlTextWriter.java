@@ -0,0 +1,263 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.xmljson;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import nu.xom.IllegalCharacterDataException;
+import nu.xom.IllegalNameException;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * A SAX content handler writing the events of a {@link JsonXMLReader} as XML text, escaped with {@link XmlJsonEscaping}.
+ * The text is laid out like json-lib's own XML output: an XML declaration naming the encoding, attributes before
+ * namespace declarations, empty elements as <tt>&lt;e/&gt;</tt>, function bodies as raw CDATA sections and characters
+ * the encoding cannot represent as character references.
+ * <p/>
+ * As json-lib builds its output with XOM, which rejects names and characters not allowed in XML, the same checks are
+ * made here and fail with the same XOM exceptions rather than producing malformed XML.
+ * @author Raul Kripalani
+ */
+final class XmlTextWriter extends DefaultHandler {
+
+	private static final String LINE_SEPARATOR = "\r\n";
+	private static final String CDATA_START = "<![CDATA[";
+	private static final String CDATA_END = "]]>";
+
+	private final Writer out;
+	private final String encoding;
+	// null when the encoding can represent every character, which is the common case
+	private final CharsetEncoder encoder;
+	private final Map<String, String> declarations = new LinkedHashMap<String, String>();
+	private boolean startTagOpen;
+
+	XmlTextWriter(Writer out, String encoding) {
+		this.out = out;
+		this.encoding = encoding;
+		this.encoder = encoding.toUpperCase().startsWith("UTF") ? null : Charset.forName(encoding).newEncoder();
+	}
+
+	@Override
+	public void startDocument() throws SAXException {
+		try {
+			out.write("<?xml version=\"1.0\" encoding=\"");
+			out.write(encoding);
+			out.write("\"?>");
+			out.write(LINE_SEPARATOR);
+		} catch (IOException e) {
+			throw new SAXException(e);
+		}
+	}
+
+	@Override
+	public void endDocument() throws SAXException {
+		try {
+			out.write(LINE_SEPARATOR);
+		} catch (IOException e) {
+			throw new SAXException(e);
+		}
+	}
+
+	@Override
+	public void startPrefixMapping(String prefix, String uri) {
+		declarations.put(prefix, uri);
+	}
+
+	@Override
+	public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+		try {
+			checkName(qName);
+			closeStartTag();
+			out.write('<');
+			out.write(qName);
+			for (int i = 0; i < attributes.getLength(); i++) {
+				String name = attributes.getQName(i);
+				// declarations are written from the prefix mappings
+				if (name.equals("xmlns") || name.startsWith("xmlns:")) {
+					continue;
+				}
+				checkName(name);
+				writeAttribute(name, attributes.getValue(i));
+			}
+			for (Entry<String, String> declaration : declarations.entrySet()) {
+				if (declaration.getKey().length() > 0) {
+					checkName(declaration.getKey());
+				}
+				writeAttribute(declaration.getKey().length() == 0 ? "xmlns" : "xmlns:" + declaration.getKey(), declaration.getValue());
+			}
+			declarations.clear();
+			startTagOpen = true;
+		} catch (IOException e) {
+			throw new SAXException(e);
+		}
+	}
+
+	@Override
+	public void endElement(String uri, String localName, String qName) throws SAXException {
+		try {
+			if (startTagOpen) {
+				out.write("/>");
+				startTagOpen = false;
+			} else {
+				out.write("</");
+				out.write(qName);
+				out.write('>');
+			}
+		} catch (IOException e) {
+			throw new SAXException(e);
+		}
+	}
+
+	@Override
+	public void characters(char[] ch, int start, int length) throws SAXException {
+		checkCharacters(ch, start, length);
+		try {
+			closeStartTag();
+			// json-lib lets the CDATA sections it builds for functions through unescaped
+			if (length >= CDATA_START.length() + CDATA_END.length()) {
+				String text = new String(ch, start, length);
+				if (text.startsWith(CDATA_START) && text.endsWith(CDATA_END)) {
+					out.write(text);
+					return;
+				}
+			}
+			if (encoder == null) {
+				XmlJsonEscaping.escapeXmlText(ch, start, length, out);
+			} else {
+				writeEncodable(new String(ch, start, length), false);
+			}
+		} catch (IOException e) {
+			throw new SAXException(e);
+		}
+	}
+
+	private void closeStartTag() throws IOException {
+		if (startTagOpen) {
+			out.write('>');
+			startTagOpen = false;
+		}
+	}
+
+	private void writeAttribute(String name, String value) throws IOException {
+		checkCharacters(value.toCharArray(), 0, value.length());
+		out.write(' ');
+		out.write(name);
+		out.write("=\"");
+		if (encoder == null) {
+			XmlJsonEscaping.escapeXmlAttribute(value, out);
+		} else {
+			writeEncodable(value, true);
+		}
+		out.write('"');
+	}
+
+	/**
+	 * Escapes the value, replacing the characters which the encoding cannot represent with character references
+	 */
+	private void writeEncodable(String value, boolean attribute) throws IOException {
+		int length = value.length();
+		int runStart = 0;
+		int i = 0;
+		while (i < length) {
+			int codePoint = value.codePointAt(i);
+			int count = Character.charCount(codePoint);
+			if (codePoint >= 128 && !encoder.canEncode(value.substring(i, i + count))) {
+				escape(value.substring(runStart, i), attribute);
+				out.write("&#x");
+				out.write(Integer.toHexString(codePoint).toUpperCase());
+				out.write(';');
+				runStart = i + count;
+			}
+			i += count;
+		}
+		escape(value.substring(runStart), attribute);
+	}
+
+	/**
+	 * Checks that the name is a qualified name, i.e. one or two XML 1.0 names without colons separated by a colon
+	 */
+	private static void checkName(String name) {
+		int colon = name.indexOf(':');
+		if (colon == 0 || colon == name.length() - 1 || name.indexOf(':', colon + 1) != -1
+				|| !isNCName(name, 0, colon == -1 ? name.length() : colon) || colon != -1 && !isNCName(name, colon + 1, name.length())) {
+			throw new IllegalNameException(name + " is not a legal XML name", name);
+		}
+	}
+
+	private static boolean isNCName(String name, int start, int end) {
+		if (start == end) {
+			return false;
+		}
+		int i = start;
+		while (i < end) {
+			int c = name.codePointAt(i);
+			if (i == start ? !isNameStartChar(c) : !isNameStartChar(c) && !isNameChar(c)) {
+				return false;
+			}
+			i += Character.charCount(c);
+		}
+		return true;
+	}
+
+	private static boolean isNameStartChar(int c) {
+		return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c == '_'
+			|| c >= 0xC0 && c <= 0xD6 || c >= 0xD8 && c <= 0xF6 || c >= 0xF8 && c <= 0x2FF || c >= 0x370 && c <= 0x37D
+			|| c >= 0x37F && c <= 0x1FFF || c >= 0x200C && c <= 0x200D || c >= 0x2070 && c <= 0x218F
+			|| c >= 0x2C00 && c <= 0x2FEF || c >= 0x3001 && c <= 0xD7FF || c >= 0xF900 && c <= 0xFDCF
+			|| c >= 0xFDF0 && c <= 0xFFFD || c >= 0x10000 && c <= 0xEFFFF;
+	}
+
+	private static boolean isNameChar(int c) {
+		return c == '-' || c == '.' || c >= '0' && c <= '9' || c == 0xB7 || c >= 0x300 && c <= 0x36F || c >= 0x203F && c <= 0x2040;
+	}
+
+	/**
+	 * Checks that every character is allowed in XML 1.0, which excludes most control characters and unpaired surrogates
+	 */
+	private static void checkCharacters(char[] ch, int start, int length) {
+		int end = start + length;
+		for (int i = start; i < end; i++) {
+			char c = ch[i];
+			if (c >= 0x20 && c < 0xD800 || c == '\n' || c == '\t' || c == '\r' || c >= 0xE000 && c <= 0xFFFD) {
+				continue;
+			}
+			if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(ch[i + 1])) {
+				i++;
+				continue;
+			}
+			throw new IllegalCharacterDataException(String.format("0x%x is not allowed in XML content", (int) c));
+		}
+	}
+
+	private void escape(String value, boolean attribute) throws IOException {
+		if (attribute) {
+			XmlJsonEscaping.escapeXmlAttribute(value, out);
+		} else {
+			XmlJsonEscaping.escapeXmlText(value, out);
+		}
+	}
+
+}
@@ -0,0 +1,132 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.xmljson;
+
+import java.io.InputStream;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import net.sf.json.JSONSerializer;
+
+import org.apache.camel.CamelExecutionException;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.mock.MockEndpoint;
+import org.apache.camel.test.junit4.CamelTestSupport;
+import org.junit.Test;
+
+public class XmlJsonAggregationStrategyTest extends CamelTestSupport {
+
+    @Test
+    public void testBatchByMessageCount() throws Exception {
+    	InputStream inStream = getClass().getClassLoader().getResourceAsStream("org/apache/camel/component/xmljson/testMessage1.xml");
+    	String in = context.getTypeConverter().convertTo(String.class, inStream);
+
+        MockEndpoint mockBatch = getMockEndpoint("mock:batch");
+        mockBatch.expectedMessageCount(2);
+        mockBatch.allMessages().body().isInstanceOf(byte[].class);
+        mockBatch.allMessages().property(XmlJsonAggregationStrategy.BATCH_SIZE).isEqualTo(3);
+
+        for (int i = 0; i < 6; i++) {
+        	template.sendBody("direct:count", in);
+        }
+        mockBatch.assertIsSatisfied();
+
+        String expected = context.getTypeConverter().convertTo(String.class, template.requestBody("direct:marshal", in));
+        String jsonString = mockBatch.getExchanges().get(0).getIn().getBody(String.class);
+        JSONArray array = (JSONArray) JSONSerializer.toJSON(jsonString);
+        assertEquals("The batch must contain 3 elements", 3, array.size());
+        for (int i = 0; i < array.size(); i++) {
+        	JSONObject obj = array.getJSONObject(i);
+        	assertEquals("Batch element differs from the individually marshalled message", JSONSerializer.toJSON(expected), obj);
+        }
+    }
+
+    @Test
+    public void testBatchByByteSize() throws Exception {
+    	InputStream inStream = getClass().getClassLoader().getResourceAsStream("org/apache/camel/component/xmljson/testMessage1.xml");
+    	String in = context.getTypeConverter().convertTo(String.class, inStream);
+
+        MockEndpoint mockBatch = getMockEndpoint("mock:batch");
+        // every message exceeds the 1 byte threshold on its own
+        mockBatch.expectedMessageCount(2);
+        mockBatch.allMessages().property(XmlJsonAggregationStrategy.BATCH_SIZE).isEqualTo(1);
+
+        template.sendBody("direct:size", in);
+        template.sendBody("direct:size", in);
+        mockBatch.assertIsSatisfied();
+
+        JSONArray array = (JSONArray) JSONSerializer.toJSON(mockBatch.getExchanges().get(1).getIn().getBody(String.class));
+        assertEquals("The batch must contain 1 element", 1, array.size());
+    }
+
+    @Test
+    public void testMalformedMessageLeavesBatchIntact() throws Exception {
+        MockEndpoint mockBatch = getMockEndpoint("mock:batch");
+        mockBatch.expectedMessageCount(2);
+        mockBatch.allMessages().property(XmlJsonAggregationStrategy.BATCH_SIZE).isEqualTo(3);
+
+        // one batch in a byte array and one in pooled segments
+        for (String uri : new String[] {"direct:count", "direct:pooled"}) {
+        	template.sendBody(uri, "<a><b>1</b></a>");
+        	try {
+        		template.sendBody(uri, "<a><b>malformed</a>");
+        		fail("The malformed message should have been rejected");
+        	} catch (CamelExecutionException e) {
+        		// expected
+        	}
+        	template.sendBody(uri, "<a><b>2</b></a>");
+        	template.sendBody(uri, "<a><b>3</b></a>");
+        }
+        mockBatch.assertIsSatisfied();
+
+        for (int i = 0; i < 2; i++) {
+        	JSONArray array = (JSONArray) JSONSerializer.toJSON(mockBatch.getExchanges().get(i).getIn().getBody(String.class));
+        	assertEquals("The batch must only contain the valid messages", 3, array.size());
+        	for (int j = 0; j < 3; j++) {
+        		assertEquals(String.valueOf(j + 1), array.getJSONObject(j).getString("b"));
+        	}
+        }
+    }
+
+    @Override
+    protected RouteBuilder createRouteBuilder() throws Exception {
+        return new RouteBuilder() {
+            @Override
+            public void configure() throws Exception {
+                XmlJsonDataFormat format = new XmlJsonDataFormat();
+
+                XmlJsonAggregationStrategy countBatch = new XmlJsonAggregationStrategy(format);
+                countBatch.setMaxMessages(3);
+                XmlJsonAggregationStrategy sizeBatch = new XmlJsonAggregationStrategy(format);
+                sizeBatch.setMaxBytes(1);
+                XmlJsonDataFormatConfig pooledConfig = new XmlJsonDataFormatConfig();
+                pooledConfig.setPooledBuffers(true);
+                pooledConfig.setBufferSegmentSize(4);
+                XmlJsonAggregationStrategy pooledBatch = new XmlJsonAggregationStrategy(new XmlJsonDataFormat(pooledConfig));
+                pooledBatch.setMaxMessages(3);
+
+                from("direct:count").aggregate(constant(true), countBatch).completionPredicate(countBatch.getCompletionPredicate()).to("mock:batch");
+                from("direct:size").aggregate(constant(true), sizeBatch).completionPredicate(sizeBatch.getCompletionPredicate()).to("mock:batch");
+                from("direct:pooled").aggregate(constant(true), pooledBatch).completionPredicate(pooledBatch.getCompletionPredicate())
+                	.convertBodyTo(String.class).to("mock:batch");
+                // individual conversion, for comparison
+                from("direct:marshal").marshal(format);
+            }
+        };
+    }
+
+}
@@ -0,0 +1,112 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.xmljson;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.mock.MockEndpoint;
+import org.apache.camel.test.junit4.CamelTestSupport;
+import org.apache.camel.util.IOHelper;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+public class XmlJsonBufferPoolTest extends CamelTestSupport {
+
+	private XmlJsonDataFormat pooledFormat;
+
+    @Test
+    public void testPooledBodyOutlivesExchange() throws Exception {
+    	InputStream inStream = getClass().getClassLoader().getResourceAsStream("org/apache/camel/component/xmljson/testMessage1.json");
+    	String in = context.getTypeConverter().convertTo(String.class, inStream);
+
+        MockEndpoint mockXML = getMockEndpoint("mock:xml");
+        mockXML.expectedMessageCount(1);
+        mockXML.message(0).body().isInstanceOf(SegmentedInputStream.class);
+
+        // the exchange has completed by the time the body is returned
+        Object body = template.requestBody("direct:unmarshal", in);
+        mockXML.assertIsSatisfied();
+        assertTrue("The body should be a pooled stream", body instanceof SegmentedInputStream);
+        assertEquals("No segment should be back in the pool before the body is read", 0, pooledFormat.getBufferPool().getPooledSegments());
+
+        ByteArrayOutputStream copy = new ByteArrayOutputStream();
+        IOHelper.copy((InputStream) body, copy);
+        Document document = context.getTypeConverter().convertTo(Document.class, copy.toByteArray());
+        assertEquals("The XML document has an unexpected root node", "o", document.getDocumentElement().getLocalName());
+        assertTrue("The segments should be back in the pool once the body was read", pooledFormat.getBufferPool().getPooledSegments() > 0);
+        assertEquals("The stream must stay at its end", -1, ((InputStream) body).read());
+    }
+
+    @Test
+    public void testSegmentsWithDirectBuffers() throws Exception {
+    	BufferPool pool = new BufferPool(16, 8, true);
+    	SegmentedOutputStream os = new SegmentedOutputStream(pool);
+    	byte[] data = "a payload spanning several small direct segments".getBytes("UTF-8");
+    	os.write(data[0]);
+    	os.write(data, 1, data.length - 1);
+    	assertEquals(data.length, os.size());
+
+    	SegmentedInputStream is = os.toInputStream();
+    	assertEquals(data.length, is.length());
+    	ByteArrayOutputStream copy = new ByteArrayOutputStream();
+    	copy.write(is.read());
+    	IOHelper.copy(is, copy);
+    	assertArrayEquals(data, copy.toByteArray());
+    	assertEquals("All segments should be back in the pool once read", 3, pool.getPooledSegments());
+    }
+
+    @Test
+    public void testSegmentsReleasedOnClose() throws Exception {
+    	BufferPool pool = new BufferPool(16, 8, false);
+    	SegmentedOutputStream os = new SegmentedOutputStream(pool);
+    	os.write(new byte[40], 0, 40);
+    	os.truncate(20);
+    	assertEquals(20, os.size());
+    	assertEquals("The emptied segment should be back in the pool", 1, pool.getPooledSegments());
+
+    	SegmentedInputStream is = os.toInputStream();
+    	assertEquals(20, is.length());
+    	is.read(new byte[5]);
+    	is.close();
+    	assertEquals("All segments should be back in the pool once closed", 3, pool.getPooledSegments());
+    	try {
+    		is.read();
+    		fail("A closed stream cannot be read");
+    	} catch (IOException e) {
+    		// expected
+    	}
+    }
+
+    @Override
+    protected RouteBuilder createRouteBuilder() throws Exception {
+        return new RouteBuilder() {
+            @Override
+            public void configure() throws Exception {
+                XmlJsonDataFormatConfig config = new XmlJsonDataFormatConfig();
+                config.setPooledBuffers(true);
+                config.setBufferSegmentSize(64);
+                pooledFormat = new XmlJsonDataFormat(config);
+
+                from("direct:unmarshal").unmarshal(pooledFormat).to("mock:xml");
+            }
+        };
+    }
+
+}
@@ -16,6 +16,7 @@
  */
 package org.apache.camel.component.xmljson;
 
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.util.Arrays;
 
@@ -26,6 +27,7 @@ import net.sf.json.JSON;
 import net.sf.json.JSONObject;
 import net.sf.json.JSONSerializer;
 
+import org.apache.camel.Exchange;
 import org.apache.camel.builder.RouteBuilder;
 import org.apache.camel.component.mock.MockEndpoint;
 import org.apache.camel.test.junit4.CamelTestSupport;
@@ -106,7 +108,65 @@ public class XmlJsonDataFormatTest extends CamelTestSupport {
         mockJSON.assertIsSatisfied();
     }
     
+    @Test
+    public void testMarshalStrategySelection() throws Exception {
+    	InputStream inStream = getClass().getClassLoader().getResourceAsStream("org/apache/camel/component/xmljson/testMessage1.xml");
+    	byte[] in = context.getTypeConverter().convertTo(byte[].class, inStream);
+    	
+        MockEndpoint mockJSON = getMockEndpoint("mock:json");
+        mockJSON.expectedMessageCount(4);
+        // small payload of known length: converted in memory
+        mockJSON.message(0).property(XmlJsonDataFormat.MARSHAL_STRATEGY).isEqualTo(MarshalStrategyEnum.BYTES);
+        // payload of unknown length: streamed
+        mockJSON.message(1).property(XmlJsonDataFormat.MARSHAL_STRATEGY).isEqualTo(MarshalStrategyEnum.STREAM);
+        // stream announcing a length above the threshold: streamed
+        mockJSON.message(2).property(XmlJsonDataFormat.MARSHAL_STRATEGY).isEqualTo(MarshalStrategyEnum.STREAM);
+        // the length headers only apply to streams, not to a byte array produced after they were set
+        mockJSON.message(3).property(XmlJsonDataFormat.MARSHAL_STRATEGY).isEqualTo(MarshalStrategyEnum.BYTES);
+        mockJSON.allMessages().property(XmlJsonDataFormat.MARSHAL_DURATION).isNotNull();
+        
+        template.sendBody("direct:marshal", in);
+        template.sendBody("direct:marshal", new ByteArrayInputStream(in));
+        template.sendBodyAndHeader("direct:marshal", new ByteArrayInputStream(in), Exchange.CONTENT_LENGTH, XmlJsonDataFormat.DEFAULT_STREAMING_THRESHOLD);
+        template.sendBodyAndHeader("direct:marshal", in, Exchange.CONTENT_LENGTH, XmlJsonDataFormat.DEFAULT_STREAMING_THRESHOLD * 10);
+        
+        mockJSON.assertIsSatisfied();
+        assertEquals("Both strategies must produce the same JSON", mockJSON.getExchanges().get(0).getIn().getBody(String.class), 
+        		mockJSON.getExchanges().get(1).getIn().getBody(String.class));
+    }
     
+    @Test
+    public void testMarshalSmallPayloadHonoursDeclaredEncoding() throws Exception {
+    	String xml = "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?><a><b>caf\u00e9 \u00fc\u00df</b></a>";
+
+        String utf16 = "<?xml version=\"1.0\" encoding=\"UTF-16\"?><a><b>caf\u00e9 \u00fc\u00df</b></a>";
+        // neither a byte order mark nor a declaration, i.e. UTF-8
+        String undeclared = "<a><b>caf\u00e9 \u00fc\u00df</b></a>";
+
+        MockEndpoint mockJSON = getMockEndpoint("mock:json");
+        mockJSON.expectedMessageCount(6);
+        mockJSON.message(0).property(XmlJsonDataFormat.MARSHAL_STRATEGY).isEqualTo(MarshalStrategyEnum.BYTES);
+        mockJSON.message(1).property(XmlJsonDataFormat.MARSHAL_STRATEGY).isEqualTo(MarshalStrategyEnum.BYTES);
+        mockJSON.message(2).property(XmlJsonDataFormat.MARSHAL_STRATEGY).isEqualTo(MarshalStrategyEnum.BYTES);
+        mockJSON.message(3).property(XmlJsonDataFormat.MARSHAL_STRATEGY).isEqualTo(MarshalStrategyEnum.STREAM);
+        mockJSON.message(4).property(XmlJsonDataFormat.MARSHAL_STRATEGY).isEqualTo(MarshalStrategyEnum.STREAM);
+        mockJSON.message(5).property(XmlJsonDataFormat.MARSHAL_STRATEGY).isEqualTo(MarshalStrategyEnum.STREAM);
+
+        template.sendBody("direct:marshal", xml.getBytes("ISO-8859-1"));
+        template.sendBody("direct:marshal", utf16.getBytes("UTF-16"));
+        template.sendBody("direct:marshal", undeclared.getBytes("UTF-8"));
+        // streams of unknown length
+        template.sendBody("direct:marshal", new ByteArrayInputStream(xml.getBytes("ISO-8859-1")));
+        template.sendBody("direct:marshal", new ByteArrayInputStream(utf16.getBytes("UTF-16LE")));
+        template.sendBody("direct:marshal", new ByteArrayInputStream(("\ufeff" + undeclared).getBytes("UTF-8")));
+        mockJSON.assertIsSatisfied();
+
+        for (Exchange exchange : mockJSON.getExchanges()) {
+        	JSONObject json = (JSONObject) JSONSerializer.toJSON(exchange.getIn().getBody(String.class));
+        	assertEquals("The declared encoding of the document must be honoured", "caf\u00e9 \u00fc\u00df", json.getString("b"));
+        }
+    }
+
     @Override
     protected RouteBuilder createRouteBuilder() throws Exception {
         return new RouteBuilder() {
@@ -0,0 +1,170 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.xmljson;
+
+import java.io.InputStream;
+import java.io.StringWriter;
+
+import net.sf.json.JSON;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import net.sf.json.JSONSerializer;
+import net.sf.json.util.JSONUtils;
+
+import org.apache.camel.util.IOHelper;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeNotNull;
+
+public class XmlJsonEscapingTest {
+
+	private static final Logger LOG = LoggerFactory.getLogger(XmlJsonEscapingTest.class);
+
+	private static final String[] SAMPLES = {"", "plain ascii text", "quotes \" and \\ backslashes", "</script> <b>/</b> a/b",
+		"control \b\t\n\f\r\u0001\u001f chars", "non-ascii \u00e9 \u00fc \u4e2d", "ends with <",
+		// C1 controls and general punctuation, which some JSON encoders escape as well
+		"c1 \u0080\u0085\u009f\u00a0", "punctuation \u2000\u2028\u2029\u2044\u20ac\u20ff\u2100"};
+
+    @Test
+    public void testJsonEscapingMatchesJsonLib() throws Exception {
+    	for (String sample : SAMPLES) {
+    		StringWriter writer = new StringWriter();
+    		writer.write('"');
+    		XmlJsonEscaping.escapeJson(sample, writer);
+    		writer.write('"');
+    		assertEquals("Unexpected escaping of: " + sample, JSONUtils.quote(sample), writer.toString());
+    	}
+    }
+
+    @Test
+    public void testChunkedJsonEscaping() throws Exception {
+    	char[] chars = "a</b</".toCharArray();
+    	StringWriter writer = new StringWriter();
+    	// split the chunks between '<' and '/'
+    	char previous = XmlJsonEscaping.escapeJson(chars, 0, 2, (char) 0, writer);
+    	previous = XmlJsonEscaping.escapeJson(chars, 2, 3, previous, writer);
+    	XmlJsonEscaping.escapeJson(chars, 5, 1, previous, writer);
+    	assertEquals("a<\\/b<\\/", writer.toString());
+    }
+
+    @Test
+    public void testXmlEscaping() throws Exception {
+    	StringWriter writer = new StringWriter();
+    	XmlJsonEscaping.escapeXmlText("a < b && c > d \"q\"", writer);
+    	assertEquals("a &lt; b &amp;&amp; c &gt; d \"q\"", writer.toString());
+
+    	writer = new StringWriter();
+    	XmlJsonEscaping.escapeXmlAttribute("a < \"b\"\n", writer);
+    	assertEquals("a &lt; &quot;b&quot;&#x0A;", writer.toString());
+
+    	writer = new StringWriter();
+    	char[] chars = "x<a & b>\r".toCharArray();
+    	XmlJsonEscaping.escapeXmlText(chars, 1, chars.length - 1, writer);
+    	assertEquals("&lt;a &amp; b&gt;&#x0D;", writer.toString());
+    }
+
+    @Test
+    public void testWriteJsonMatchesJsonLib() throws Exception {
+    	InputStream inStream = getClass().getClassLoader().getResourceAsStream("org/apache/camel/component/xmljson/testMessage1.json");
+    	JSON json = JSONSerializer.toJSON(IOHelper.loadText(inStream));
+    	assertWriteJson(json);
+    	assertWriteJson(createTextHeavyDocument(50));
+    	assertWriteJson(JSONSerializer.toJSON("[1, 2.5, true, null, \"s\", {}, []]"));
+    	JSONObject samples = new JSONObject();
+    	for (int i = 0; i < SAMPLES.length; i++) {
+    		samples.element("key " + SAMPLES[i], SAMPLES[i]);
+    	}
+    	assertWriteJson(samples);
+    }
+
+    /**
+     * Compares the throughput of json-lib's JSON.write() with {@link XmlJsonEscaping#writeJson(JSON, java.io.Writer)} on a
+     * text-heavy document. The figures are logged, not asserted. Only runs when the number of iterations is given with
+     * <tt>-Dxmljson.benchmark.iterations</tt>
+     */
+    @Test
+    public void testTextHeavyBenchmark() throws Exception {
+    	Integer iterations = Integer.getInteger("xmljson.benchmark.iterations");
+    	assumeNotNull(iterations);
+    	JSON json = createTextHeavyDocument(200);
+
+    	// warm up both paths
+    	long jsonLib = timeJsonLib(json, iterations);
+    	long escaping = timeEscaping(json, iterations);
+    	jsonLib = timeJsonLib(json, iterations);
+    	escaping = timeEscaping(json, iterations);
+
+    	StringWriter writer = new StringWriter();
+    	json.write(writer);
+    	double megabytes = writer.getBuffer().length() * (double) iterations / (1024 * 1024);
+    	LOG.info("Text-heavy document, {} iterations: json-lib {} MB/s, XmlJsonEscaping {} MB/s", new Object[] {iterations,
+    		Math.round(megabytes * 1000000000L / jsonLib), Math.round(megabytes * 1000000000L / escaping)});
+    }
+
+    private static long timeJsonLib(JSON json, int iterations) {
+    	long start = System.nanoTime();
+    	for (int i = 0; i < iterations; i++) {
+    		json.write(new StringWriter());
+    	}
+    	return System.nanoTime() - start;
+    }
+
+    private static long timeEscaping(JSON json, int iterations) throws Exception {
+    	long start = System.nanoTime();
+    	for (int i = 0; i < iterations; i++) {
+    		XmlJsonEscaping.writeJson(json, new StringWriter());
+    	}
+    	return System.nanoTime() - start;
+    }
+
+    private static void assertWriteJson(JSON json) throws Exception {
+    	StringWriter expected = new StringWriter();
+    	json.write(expected);
+    	StringWriter actual = new StringWriter();
+    	XmlJsonEscaping.writeJson(json, actual);
+    	assertEquals(expected.toString(), actual.toString());
+    }
+
+    /**
+     * Builds a document shaped like the output of marshalling prose-like XML: few keys, long string values with
+     * occasional characters to escape
+     */
+    private static JSON createTextHeavyDocument(int paragraphs) {
+    	StringBuilder paragraph = new StringBuilder();
+    	for (int i = 0; i < 40; i++) {
+    		paragraph.append("Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor incididunt. ");
+    		if (i % 10 == 0) {
+    			paragraph.append("He said \"see <a href=\"x\">here</a>\".\n");
+    		}
+    	}
+    	JSONArray array = new JSONArray();
+    	for (int i = 0; i < paragraphs; i++) {
+    		JSONObject obj = new JSONObject();
+    		obj.element("id", i);
+    		obj.element("title", "Chapter " + i);
+    		obj.element("text", paragraph.toString());
+    		array.add(obj);
+    	}
+    	JSONObject root = new JSONObject();
+    	root.element("paragraphs", array);
+    	return root;
+    }
+
+}
@@ -0,0 +1,385 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.xmljson;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import net.sf.json.xml.XMLSerializer;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.util.IOHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * End-to-end load harness: runs an xml-json route topology in a full {@link CamelContext} with 1 to N concurrent
+ * producer threads, sending a generated mix of payload sizes, and measures for each thread count the throughput, the
+ * p50/p99/p999 latencies, the GC time and the peak heap usage. The results are written as a JSON report.
+ * <p/>
+ * All routes share a single {@link XmlJsonDataFormat}, so that contention on its state shows up as throughput which
+ * does not scale with the thread count. Run it with <tt>main()</tt> and the following system properties:
+ * <ul>
+ * <li><tt>xmljson.load.topology</tt>: <tt>MARSHAL</tt>, <tt>UNMARSHAL</tt> or <tt>ROUNDTRIP</tt> (default)</li>
+ * <li><tt>xmljson.load.threads</tt>: comma separated thread counts, default <tt>1,2,4,8</tt></li>
+ * <li><tt>xmljson.load.messages</tt>: messages sent by every thread for every thread count, default 2000</li>
+ * <li><tt>xmljson.load.warmup</tt>: messages sent before measuring, default 1000</li>
+ * <li><tt>xmljson.load.mix</tt>: payload sizes in bytes and their weights, default <tt>1024:90,65536:9,1048576:1</tt></li>
+ * <li><tt>xmljson.load.report</tt>: report file, default <tt>target/xmljson-load-report.json</tt></li>
+ * </ul>
+ * GC time is the collection time reported by the garbage collector MXBeans, which for stop-the-world collectors is the
+ * pause time. Peak heap is the sum of the peak usage of all heap memory pools during the run.
+ * @author Raul Kripalani
+ */
+public class XmlJsonLoadHarness {
+
+	public enum Topology {
+		/** XML to JSON */
+		MARSHAL,
+		/** JSON to XML */
+		UNMARSHAL,
+		/** XML to JSON and back, as in XmlJsonConcurrencyTest */
+		ROUNDTRIP
+	}
+
+	private static final Logger LOG = LoggerFactory.getLogger(XmlJsonLoadHarness.class);
+	private static final String PROPERTY_PREFIX = "xmljson.load.";
+
+	private Topology topology = Topology.ROUNDTRIP;
+	private int[] threadCounts = {1, 2, 4, 8};
+	private int messagesPerThread = 2000;
+	private int warmUpMessages = 1000;
+	private Map<Integer, Integer> payloadMix = parseMix("1024:90,65536:9,1048576:1");
+	private File reportFile = new File("target/xmljson-load-report.json");
+	private XmlJsonDataFormatConfig dataFormatConfig;
+
+	public static void main(String[] args) throws Exception {
+		XmlJsonLoadHarness harness = new XmlJsonLoadHarness();
+		harness.setTopology(Topology.valueOf(System.getProperty(PROPERTY_PREFIX + "topology", harness.topology.name())));
+		String threads = System.getProperty(PROPERTY_PREFIX + "threads");
+		if (threads != null) {
+			String[] tokens = threads.split(",");
+			int[] threadCounts = new int[tokens.length];
+			for (int i = 0; i < tokens.length; i++) {
+				threadCounts[i] = Integer.parseInt(tokens[i].trim());
+			}
+			harness.setThreadCounts(threadCounts);
+		}
+		harness.setMessagesPerThread(Integer.getInteger(PROPERTY_PREFIX + "messages", harness.messagesPerThread));
+		harness.setWarmUpMessages(Integer.getInteger(PROPERTY_PREFIX + "warmup", harness.warmUpMessages));
+		String mix = System.getProperty(PROPERTY_PREFIX + "mix");
+		if (mix != null) {
+			harness.setPayloadMix(parseMix(mix));
+		}
+		harness.setReportFile(new File(System.getProperty(PROPERTY_PREFIX + "report", harness.reportFile.getPath())));
+		harness.run();
+	}
+
+	/**
+	 * Runs the load test for every thread count and writes the report
+	 * @return the report
+	 */
+	public JSONObject run() throws Exception {
+		List<Object> payloads = generatePayloads();
+		CamelContext context = createCamelContext();
+		context.start();
+		JSONObject report = new JSONObject();
+		try {
+			ProducerTemplate template = context.createProducerTemplate();
+			for (int i = 0; i < warmUpMessages; i++) {
+				template.requestBody("direct:start", payloads.get(i % payloads.size()));
+			}
+
+			report.element("topology", topology.name());
+			report.element("messagesPerThread", messagesPerThread);
+			report.element("payloadMix", payloadMix);
+			report.element("availableProcessors", Runtime.getRuntime().availableProcessors());
+			report.element("maxHeap", Runtime.getRuntime().maxMemory());
+			JSONArray runs = new JSONArray();
+			for (int threads : threadCounts) {
+				JSONObject result = runWithThreads(template, payloads, threads);
+				LOG.info("{} threads: {}", threads, result);
+				runs.add(result);
+			}
+			report.element("runs", runs);
+		} finally {
+			context.stop();
+		}
+
+		reportFile.getAbsoluteFile().getParentFile().mkdirs();
+		Writer writer = new FileWriter(reportFile);
+		try {
+			report.write(writer);
+		} finally {
+			IOHelper.close(writer);
+		}
+		LOG.info("Load report written to {}", reportFile.getAbsolutePath());
+		return report;
+	}
+
+	private JSONObject runWithThreads(final ProducerTemplate template, final List<Object> payloads, int threads) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		final CountDownLatch start = new CountDownLatch(1);
+		List<Future<long[]>> futures = new ArrayList<Future<long[]>>();
+		for (int t = 0; t < threads; t++) {
+			final int offset = t;
+			futures.add(executor.submit(new Callable<long[]>() {
+				public long[] call() throws Exception {
+					long[] latencies = new long[messagesPerThread];
+					start.await();
+					for (int i = 0; i < messagesPerThread; i++) {
+						Object payload = payloads.get((offset + i * 31) % payloads.size());
+						long begin = System.nanoTime();
+						template.requestBody("direct:start", payload);
+						latencies[i] = System.nanoTime() - begin;
+					}
+					return latencies;
+				}
+			}));
+		}
+
+		System.gc();
+		long gcTimeBefore = getGcTime();
+		long gcCountBefore = getGcCount();
+		resetPeakHeap();
+		long begin = System.nanoTime();
+		start.countDown();
+		long[] latencies = new long[threads * messagesPerThread];
+		int index = 0;
+		try {
+			for (Future<long[]> future : futures) {
+				long[] threadLatencies = future.get();
+				System.arraycopy(threadLatencies, 0, latencies, index, threadLatencies.length);
+				index += threadLatencies.length;
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		long elapsed = System.nanoTime() - begin;
+
+		Arrays.sort(latencies);
+		JSONObject result = new JSONObject();
+		result.element("threads", threads);
+		result.element("messages", latencies.length);
+		result.element("elapsedMillis", elapsed / 1000000);
+		result.element("throughputPerSecond", latencies.length * 1000000000.0 / elapsed);
+		result.element("p50Micros", percentile(latencies, 0.50) / 1000);
+		result.element("p99Micros", percentile(latencies, 0.99) / 1000);
+		result.element("p999Micros", percentile(latencies, 0.999) / 1000);
+		result.element("maxMicros", latencies[latencies.length - 1] / 1000);
+		result.element("gcMillis", getGcTime() - gcTimeBefore);
+		result.element("gcCount", getGcCount() - gcCountBefore);
+		result.element("peakHeapBytes", getPeakHeap());
+		return result;
+	}
+
+	private CamelContext createCamelContext() throws Exception {
+		final XmlJsonDataFormat format = dataFormatConfig == null ? new XmlJsonDataFormat() : new XmlJsonDataFormat(dataFormatConfig);
+		CamelContext context = new DefaultCamelContext();
+		context.addRoutes(new RouteBuilder() {
+			@Override
+			public void configure() throws Exception {
+				switch (topology) {
+				case MARSHAL:
+					from("direct:start").marshal(format);
+					break;
+				case UNMARSHAL:
+					from("direct:start").unmarshal(format);
+					break;
+				default:
+					from("direct:start").marshal(format).to("direct:unmarshal");
+					from("direct:unmarshal").unmarshal(format);
+				}
+			}
+		});
+		return context;
+	}
+
+	/**
+	 * Generates 100 payloads distributed by size according to the payload mix; JSON payloads for the UNMARSHAL topology,
+	 * XML otherwise
+	 */
+	private List<Object> generatePayloads() {
+		int totalWeight = 0;
+		for (int weight : payloadMix.values()) {
+			totalWeight += weight;
+		}
+		List<Object> payloads = new ArrayList<Object>();
+		Random random = new Random(42);
+		XMLSerializer serializer = new XMLSerializer();
+		for (Map.Entry<Integer, Integer> entry : payloadMix.entrySet()) {
+			int count = Math.max(1, Math.round(100f * entry.getValue() / totalWeight));
+			for (int i = 0; i < count; i++) {
+				String xml = generateXML(entry.getKey(), random);
+				payloads.add(topology == Topology.UNMARSHAL ? serializer.read(xml).toString() : xml);
+			}
+		}
+		// interleave the sizes
+		Collections.shuffle(payloads, random);
+		return payloads;
+	}
+
+	private static String generateXML(int size, Random random) {
+		StringBuilder xml = new StringBuilder(size + 256);
+		xml.append("<events>");
+		int id = 0;
+		while (xml.length() < size) {
+			xml.append("<event id=\"").append(id++).append("\"><type>").append(random.nextBoolean() ? "order" : "shipment")
+				.append("</type><amount>").append(random.nextInt(100000)).append("</amount><valid>").append(random.nextBoolean())
+				.append("</valid><tags><tag>a</tag><tag>b</tag></tags><description>Event &amp; description with some text, ")
+				.append(Long.toHexString(random.nextLong())).append("</description></event>");
+		}
+		xml.append("</events>");
+		return xml.toString();
+	}
+
+	private static long percentile(long[] sorted, double percentile) {
+		int index = (int) Math.ceil(percentile * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+	}
+
+	private static long getGcTime() {
+		long total = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			total += Math.max(0, gc.getCollectionTime());
+		}
+		return total;
+	}
+
+	private static long getGcCount() {
+		long total = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			total += Math.max(0, gc.getCollectionCount());
+		}
+		return total;
+	}
+
+	private static void resetPeakHeap() {
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				pool.resetPeakUsage();
+			}
+		}
+	}
+
+	private static long getPeakHeap() {
+		long total = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				total += pool.getPeakUsage().getUsed();
+			}
+		}
+		return total;
+	}
+
+	private static Map<Integer, Integer> parseMix(String mix) {
+		Map<Integer, Integer> answer = new LinkedHashMap<Integer, Integer>();
+		for (String entry : mix.split(",")) {
+			String[] tokens = entry.split(":");
+			answer.put(Integer.valueOf(tokens[0].trim()), tokens.length > 1 ? Integer.valueOf(tokens[1].trim()) : 1);
+		}
+		return answer;
+	}
+
+	// Properties
+	// -------------------------------------------------------------------------
+
+	public Topology getTopology() {
+		return topology;
+	}
+
+	public void setTopology(Topology topology) {
+		this.topology = topology;
+	}
+
+	public int[] getThreadCounts() {
+		return threadCounts;
+	}
+
+	public void setThreadCounts(int[] threadCounts) {
+		this.threadCounts = threadCounts;
+	}
+
+	public int getMessagesPerThread() {
+		return messagesPerThread;
+	}
+
+	public void setMessagesPerThread(int messagesPerThread) {
+		this.messagesPerThread = messagesPerThread;
+	}
+
+	public int getWarmUpMessages() {
+		return warmUpMessages;
+	}
+
+	public void setWarmUpMessages(int warmUpMessages) {
+		this.warmUpMessages = warmUpMessages;
+	}
+
+	public Map<Integer, Integer> getPayloadMix() {
+		return payloadMix;
+	}
+
+	/**
+	 * Payload sizes in bytes mapped to their relative weight in the generated payloads
+	 */
+	public void setPayloadMix(Map<Integer, Integer> payloadMix) {
+		this.payloadMix = payloadMix;
+	}
+
+	public File getReportFile() {
+		return reportFile;
+	}
+
+	public void setReportFile(File reportFile) {
+		this.reportFile = reportFile;
+	}
+
+	public XmlJsonDataFormatConfig getDataFormatConfig() {
+		return dataFormatConfig;
+	}
+
+	/**
+	 * Configuration of the data format under test, null for the defaults
+	 */
+	public void setDataFormatConfig(XmlJsonDataFormatConfig dataFormatConfig) {
+		this.dataFormatConfig = dataFormatConfig;
+	}
+
+}
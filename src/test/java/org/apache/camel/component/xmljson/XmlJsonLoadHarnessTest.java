@@ -0,0 +1,67 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.xmljson;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the load harness with a tiny load, only to check that it produces a complete report. The harness is meant to be
+ * run on its own, with a real load, through its <tt>main()</tt> method.
+ */
+public class XmlJsonLoadHarnessTest {
+
+    @Test
+    public void testHarnessWritesReport() throws Exception {
+    	File reportFile = new File("target/xmljson-load-report-test.json");
+    	reportFile.delete();
+
+    	Map<Integer, Integer> mix = new LinkedHashMap<Integer, Integer>();
+    	mix.put(512, 3);
+    	mix.put(8192, 1);
+
+    	XmlJsonLoadHarness harness = new XmlJsonLoadHarness();
+    	harness.setThreadCounts(new int[] {1, 2});
+    	harness.setMessagesPerThread(50);
+    	harness.setWarmUpMessages(20);
+    	harness.setPayloadMix(mix);
+    	harness.setReportFile(reportFile);
+    	JSONObject report = harness.run();
+
+    	assertTrue("The report file was not written", reportFile.length() > 0);
+    	JSONArray runs = report.getJSONArray("runs");
+    	assertEquals("There must be one run per thread count", 2, runs.size());
+    	for (int i = 0; i < runs.size(); i++) {
+    		JSONObject run = runs.getJSONObject(i);
+    		assertEquals((i + 1) * 50, run.getInt("messages"));
+    		assertTrue(run.getDouble("throughputPerSecond") > 0);
+    		assertTrue(run.getLong("p50Micros") <= run.getLong("p99Micros"));
+    		assertTrue(run.getLong("p99Micros") <= run.getLong("p999Micros"));
+    		assertTrue(run.getLong("peakHeapBytes") > 0);
+    	}
+    }
+
+}
@@ -0,0 +1,120 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.xmljson;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+
+import net.sf.json.JSONObject;
+import net.sf.json.JSONSerializer;
+
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.mock.MockEndpoint;
+import org.apache.camel.test.junit4.CamelTestSupport;
+import org.junit.Test;
+
+public class XmlJsonSpoolTest extends CamelTestSupport {
+
+	private static final String SPOOL_DIRECTORY = "target/xmljson-spool";
+
+    @Override
+    public void setUp() throws Exception {
+        deleteDirectory(SPOOL_DIRECTORY);
+        createDirectory(SPOOL_DIRECTORY);
+        super.setUp();
+    }
+
+    @Test
+    public void testLargeTextNodesAreSpooled() throws Exception {
+    	StringBuilder attachment = new StringBuilder();
+    	// base64 alphabet plus characters which need escaping in JSON, including a split "</" sequence
+    	while (attachment.length() < 256 * 1024) {
+    		attachment.append("QUJDREVGR0hJSktMTU5PUFFSU1RVVldYWVo+/=\"quoted\"\ttab&lt;/end\u00e9 ");
+    	}
+    	String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?><doc xmlns:ns=\"http://test.org\"><name ns:id=\"1\">small</name><ns:data>"
+    			+ attachment + "</ns:data><data2>" + attachment + "</data2></doc>";
+    	byte[] in = xml.getBytes("UTF-8");
+
+        MockEndpoint mockJSON = getMockEndpoint("mock:json");
+        mockJSON.expectedMessageCount(1);
+        mockJSON.message(0).property(XmlJsonDataFormat.MARSHAL_STRATEGY).isEqualTo(MarshalStrategyEnum.SPOOL);
+
+        Object spooled = template.requestBody("direct:spool", new ByteArrayInputStream(in));
+        Object expected = template.requestBody("direct:marshal", new ByteArrayInputStream(in));
+        mockJSON.assertIsSatisfied();
+
+        String spooledString = context.getTypeConverter().convertTo(String.class, spooled);
+        String expectedString = context.getTypeConverter().convertTo(String.class, expected);
+        assertEquals("The spooled conversion must produce the same JSON as the in-memory conversion", expectedString, spooledString);
+        JSONObject obj = (JSONObject) JSONSerializer.toJSON(spooledString);
+        assertEquals("Spooled text was not restored", attachment.toString().replace("&lt;", "<"), obj.getString("data2"));
+        assertEquals("Spool files must be deleted after the conversion", 0, new File(SPOOL_DIRECTORY).list().length);
+    }
+
+    @Test
+    public void testTypedTextNodesAreNotSpooled() throws Exception {
+    	StringBuilder number = new StringBuilder("1");
+    	StringBuilder text = new StringBuilder();
+    	while (number.length() < 4096) {
+    		number.append("234567890");
+    		text.append("some text ");
+    	}
+    	String xml = "<doc><n json_type=\"number\">" + number + "</n><s json_type=\"string\">" + text + "</s></doc>";
+
+        MockEndpoint mockJSON = getMockEndpoint("mock:json");
+        mockJSON.expectedMessageCount(1);
+        mockJSON.message(0).property(XmlJsonDataFormat.MARSHAL_STRATEGY).isEqualTo(MarshalStrategyEnum.SPOOL);
+
+        String spooled = template.requestBody("direct:spoolTypeHints", xml.getBytes("UTF-8"), String.class);
+        String expected = template.requestBody("direct:marshalTypeHints", xml.getBytes("UTF-8"), String.class);
+        mockJSON.assertIsSatisfied();
+
+        assertEquals("The spooled conversion must produce the same JSON as the in-memory conversion", expected, spooled);
+        JSONObject obj = (JSONObject) JSONSerializer.toJSON(spooled);
+        assertEquals("The number must not be replaced by a placeholder", number.toString(), obj.get("n").toString());
+        assertEquals("Spool files must be deleted after the conversion", 0, new File(SPOOL_DIRECTORY).list().length);
+    }
+
+    @Override
+    protected RouteBuilder createRouteBuilder() throws Exception {
+        return new RouteBuilder() {
+            @Override
+            public void configure() throws Exception {
+                XmlJsonDataFormatConfig config = new XmlJsonDataFormatConfig();
+                config.setSpoolThreshold(1024L);
+                config.setSpoolDirectory(SPOOL_DIRECTORY);
+
+                from("direct:spool").marshal(new XmlJsonDataFormat(config)).to("mock:json");
+                from("direct:marshal").marshal(new XmlJsonDataFormat());
+
+                XmlJsonDataFormatConfig typeHintsConfig = new XmlJsonDataFormatConfig();
+                typeHintsConfig.setTypeHints("YES");
+                XmlJsonDataFormatConfig spoolTypeHintsConfig = new XmlJsonDataFormatConfig();
+                spoolTypeHintsConfig.setTypeHints("YES");
+                spoolTypeHintsConfig.setSpoolThreshold(1024L);
+                spoolTypeHintsConfig.setSpoolDirectory(SPOOL_DIRECTORY);
+                // byte arrays above the streaming threshold, so that both go through a stream
+                spoolTypeHintsConfig.setStreamingThreshold(0L);
+                typeHintsConfig.setStreamingThreshold(0L);
+
+                from("direct:spoolTypeHints").marshal(new XmlJsonDataFormat(spoolTypeHintsConfig)).to("mock:json");
+                from("direct:marshalTypeHints").marshal(new XmlJsonDataFormat(typeHintsConfig));
+            }
+        };
+    }
+
+}
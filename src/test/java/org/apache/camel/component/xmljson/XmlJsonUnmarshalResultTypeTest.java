@@ -0,0 +1,291 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.xmljson;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMResult;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.sax.SAXSource;
+
+import net.sf.json.JSON;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import net.sf.json.JSONSerializer;
+import net.sf.json.xml.XMLSerializer;
+import nu.xom.IllegalDataException;
+
+import org.apache.camel.CamelExecutionException;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.mock.MockEndpoint;
+import org.apache.camel.test.junit4.CamelTestSupport;
+import org.apache.camel.util.IOHelper;
+import org.apache.camel.util.ObjectHelper;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+public class XmlJsonUnmarshalResultTypeTest extends CamelTestSupport {
+
+	private XmlJsonDataFormat pooledExtraFormat;
+
+    @Test
+    public void testUnmarshalToDocument() throws Exception {
+    	String in = loadJSON("testMessage1.json");
+
+        MockEndpoint mockXML = getMockEndpoint("mock:xml");
+        mockXML.expectedMessageCount(1);
+        mockXML.message(0).body().isInstanceOf(Document.class);
+
+        Document document = (Document) template.requestBody("direct:document", in);
+        assertEquals("The XML document has an unexpected root node", "o", document.getDocumentElement().getLocalName());
+        assertSameXML(jsonLibXML(new XmlJsonDataFormatConfig(), in), document);
+        mockXML.assertIsSatisfied();
+    }
+
+    @Test
+    public void testUnmarshalToDOMSource() throws Exception {
+    	String in = loadJSON("testMessage1.json");
+
+        DOMSource source = (DOMSource) template.requestBody("direct:domSource", in);
+        assertSameXML(jsonLibXML(new XmlJsonDataFormatConfig(), in), (Document) source.getNode());
+    }
+
+    @Test
+    public void testUnmarshalToSAXSource() throws Exception {
+    	String in = loadJSON("testMessage1.json");
+
+        SAXSource source = (SAXSource) template.requestBody("direct:saxSource", in);
+        Object expected = jsonLibXML(new XmlJsonDataFormatConfig(), in);
+        // the events can be generated more than once
+        assertSameXML(expected, transformToDocument(source));
+        assertSameXML(expected, transformToDocument(source));
+    }
+
+    @Test
+    public void testUnmarshalToDocumentWithOptions() throws Exception {
+    	String in = loadJSON("testMessage1.json");
+
+        Document document = (Document) template.requestBody("direct:documentOptions", in);
+        assertEquals("The XML document doesn't carry newRoot as the root name", "newRoot", document.getDocumentElement().getLocalName());
+        assertSameXML(jsonLibXML(optionsConfig(), in), document);
+    }
+
+    @Test
+    public void testUnmarshalToDocumentWithNamespaces() throws Exception {
+    	String in = loadJSON("testMessage2-namespaces.json");
+
+        Document document = (Document) template.requestBody("direct:documentNS", in);
+        assertEquals("Root element must be qualified in the default namespace", "http://camel.apache.org/default", document.getDocumentElement().getNamespaceURI());
+        assertEquals("Element surname must be qualified in the default namespace", "http://camel.apache.org/default",
+        		document.getDocumentElement().getElementsByTagName("surname").item(0).getNamespaceURI());
+        assertSameXML(jsonLibXML(namespacesConfig(), in), document);
+    }
+
+    @Test
+    public void testPooledUnmarshalMatchesJsonLib() throws Exception {
+    	String special = "{\"@attr\": \"a < \\\"b\\\" & c\\n\\td\\r\", \"text\": \"x < y && z > w\\r\", \"empty\": \"\", "
+    		+ "\"unicode\": \"caf\u00e9 \u4e2d \\ud83d\\ude00\", \"f\": function(a){ return a < 1 && a > 0; }, \"n\": null, \"list\": [1, true, {}]}";
+    	String[] documents = {loadJSON("testMessage1.json"), loadJSON("testMessage2-namespaces.json"), special};
+    	for (String in : documents) {
+    		// the STRING result is json-lib's own output
+    		assertEquals(jsonLibXML(null, in), template.requestBody("direct:string", in, String.class));
+    		// pooled results are written without json-lib, and must not differ from it in a single character
+    		assertEquals(jsonLibXML(pooled(new XmlJsonDataFormatConfig()), in), readPooled("direct:pooled", in, "UTF-8"));
+    		assertEquals(jsonLibXML(pooled(optionsConfig()), in), readPooled("direct:pooledOptions", in, "UTF-8"));
+    		// XOM does not define the order of several namespace declarations on one element
+    		assertSameXML(jsonLibXML(pooled(namespacesConfig()), in), context.getTypeConverter().convertTo(Document.class, readPooled("direct:pooledNS", in, "UTF-8")));
+    		assertEquals(jsonLibXML(pooled(latin1Config()), in), readPooled("direct:pooledLatin1", in, "ISO-8859-1"));
+    		assertSameXML(jsonLibXML(new XmlJsonDataFormatConfig(), in), template.requestBody("direct:document", in, Document.class));
+    	}
+
+    	String xml = readPooled("direct:pooledLatin1", special, "ISO-8859-1");
+    	assertTrue("The XML must declare its encoding: " + xml, xml.startsWith("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>"));
+    	assertTrue("Characters outside of the encoding must be written as references: " + xml, xml.contains("&#x4E2D;") && xml.contains("&#x1F600;"));
+    }
+
+    @Test
+    public void testPooledUnmarshalRejectsWhatJsonLibRejects() throws Exception {
+    	// names which are not XML names, and a control character
+    	String[] documents = {"{\"a b\": 1}", "{\"1x\": 1}", "{\"@a b\": \"v\", \"c\": 1}", "{\"a\": \"\\u0001\"}"};
+    	for (String in : documents) {
+    		for (String endpoint : new String[] {"direct:string", "direct:pooled"}) {
+    			try {
+    				template.requestBody(endpoint, in);
+    				fail(endpoint + " should have rejected " + in);
+    			} catch (CamelExecutionException e) {
+    				assertNotNull(endpoint + " should have failed like XOM for " + in + ": " + e.getCause(),
+    						ObjectHelper.getException(IllegalDataException.class, e));
+    			}
+    		}
+    	}
+    }
+
+    @Test
+    public void testPooledUnmarshalWithSerializerNamespacesAndExpandedArrays() throws Exception {
+    	String in = loadJSON("testMessage1.json");
+    	assertEquals(pooledExtraFormat.getSerializer().write(JSONSerializer.toJSON(in)), readPooled("direct:pooledExtra", in, "UTF-8"));
+
+    	// json-lib marks the arrays read from repeated elements as expanded, so that they are written back the same way
+    	JSON json = new XMLSerializer().read("<o><a>1</a><a>2</a><b>3</b></o>");
+    	assertTrue(((JSONArray) ((JSONObject) json).get("a")).isExpandElements());
+    	String expected = pooledExtraFormat.getSerializer().write(json);
+    	assertEquals(expected, readPooled("direct:pooledExtra", json, "UTF-8"));
+    	assertSameXML(new XmlJsonDataFormat(resultType(new XmlJsonDataFormatConfig(), "DOCUMENT")).getSerializer().write(json),
+    			template.requestBody("direct:document", json, Document.class));
+    }
+
+    @Test
+    public void testConcurrentUnmarshalToDocument() throws Exception {
+    	final String in = loadJSON("testMessage1.json");
+    	String expected = jsonLibXML(new XmlJsonDataFormatConfig(), in);
+
+        ExecutorService executor = Executors.newFixedThreadPool(5);
+        List<Future<Object>> results = new ArrayList<Future<Object>>();
+        for (int i = 0; i < 200; i++) {
+            results.add(executor.submit(new Callable<Object>() {
+                public Object call() throws Exception {
+                    return template.requestBody("direct:document", in);
+                }
+            }));
+        }
+        for (Future<Object> result : results) {
+        	assertSameXML(expected, (Document) result.get());
+        }
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testPooledBuffersRequireStringResult() throws Exception {
+    	XmlJsonDataFormatConfig config = resultType(new XmlJsonDataFormatConfig(), "DOCUMENT");
+    	config.setPooledBuffers(true);
+    	try {
+    		new XmlJsonDataFormat(config);
+    		fail("Pooled buffers cannot be combined with the DOCUMENT result type");
+    	} catch (IllegalArgumentException e) {
+    		// expected
+    	}
+    }
+
+    private String readPooled(String endpoint, Object body, String encoding) throws Exception {
+    	InputStream stream = (InputStream) template.requestBody(endpoint, body);
+    	try {
+    		return IOHelper.loadText(new InputStreamReader(stream, encoding));
+    	} finally {
+    		stream.close();
+    	}
+    }
+
+    private String loadJSON(String name) {
+    	InputStream inStream = getClass().getClassLoader().getResourceAsStream("org/apache/camel/component/xmljson/" + name);
+    	return context.getTypeConverter().convertTo(String.class, inStream);
+    }
+
+    private static Document transformToDocument(SAXSource source) throws Exception {
+    	DOMResult result = new DOMResult();
+    	TransformerFactory.newInstance().newTransformer().transform(source, result);
+    	return (Document) result.getNode();
+    }
+
+    /**
+     * The XML text produced by json-lib itself, with the serializer of a data format created with the given config
+     */
+    private static String jsonLibXML(XmlJsonDataFormatConfig config, String json) {
+    	XMLSerializer serializer = (config == null ? new XmlJsonDataFormat() : new XmlJsonDataFormat(config)).getSerializer();
+    	return config == null || config.getEncoding() == null ? serializer.write(JSONSerializer.toJSON(json)) : serializer.write(JSONSerializer.toJSON(json), config.getEncoding());
+    }
+
+    /**
+     * Checks that the document built directly from JSON is equal to the one parsed from json-lib's XML text
+     */
+    private void assertSameXML(String expectedXML, Document actual) {
+    	Document expected = context.getTypeConverter().convertTo(Document.class, expectedXML);
+    	assertTrue("The document differs from json-lib's output: " + context.getTypeConverter().convertTo(String.class, actual),
+    			expected.getDocumentElement().isEqualNode(actual.getDocumentElement()));
+    }
+
+    @Override
+    protected RouteBuilder createRouteBuilder() throws Exception {
+        return new RouteBuilder() {
+            @Override
+            public void configure() throws Exception {
+                from("direct:string").unmarshal(new XmlJsonDataFormat());
+                from("direct:document").unmarshal(new XmlJsonDataFormat(resultType(new XmlJsonDataFormatConfig(), "DOCUMENT"))).to("mock:xml");
+                from("direct:domSource").unmarshal(new XmlJsonDataFormat(resultType(new XmlJsonDataFormatConfig(), "DOM_SOURCE")));
+                from("direct:saxSource").unmarshal(new XmlJsonDataFormat(resultType(new XmlJsonDataFormatConfig(), "SAX_SOURCE")));
+
+                from("direct:documentOptions").unmarshal(new XmlJsonDataFormat(resultType(optionsConfig(), "DOCUMENT")));
+                from("direct:documentNS").unmarshal(new XmlJsonDataFormat(resultType(namespacesConfig(), "DOCUMENT")));
+
+                from("direct:pooled").unmarshal(new XmlJsonDataFormat(pooled(new XmlJsonDataFormatConfig())));
+                from("direct:pooledOptions").unmarshal(new XmlJsonDataFormat(pooled(optionsConfig())));
+                from("direct:pooledNS").unmarshal(new XmlJsonDataFormat(pooled(namespacesConfig())));
+                from("direct:pooledLatin1").unmarshal(new XmlJsonDataFormat(pooled(latin1Config())));
+
+                // namespaces added to the serializer directly rather than through the configuration
+                pooledExtraFormat = new XmlJsonDataFormat(pooled(new XmlJsonDataFormatConfig()));
+                pooledExtraFormat.getSerializer().addNamespace("ns9", "http://camel.apache.org/extra");
+                pooledExtraFormat.getSerializer().addNamespace("ns8", "http://camel.apache.org/extra/a", "a");
+                from("direct:pooledExtra").unmarshal(pooledExtraFormat);
+            }
+        };
+    }
+
+    private static XmlJsonDataFormatConfig resultType(XmlJsonDataFormatConfig config, String resultType) {
+    	config.setUnmarshalResultType(resultType);
+    	return config;
+    }
+
+    private static XmlJsonDataFormatConfig pooled(XmlJsonDataFormatConfig config) {
+    	config.setPooledBuffers(true);
+    	config.setBufferSegmentSize(64);
+    	return config;
+    }
+
+    private static XmlJsonDataFormatConfig optionsConfig() {
+    	XmlJsonDataFormatConfig config = new XmlJsonDataFormatConfig();
+    	config.setRootName("newRoot");
+    	config.setElementName("item");
+    	config.setExpandableProperties(Arrays.asList("d"));
+    	config.setTypeHints("YES");
+    	return config;
+    }
+
+    private static XmlJsonDataFormatConfig latin1Config() {
+    	XmlJsonDataFormatConfig config = new XmlJsonDataFormatConfig();
+    	config.setEncoding("ISO-8859-1");
+    	return config;
+    }
+
+    private static XmlJsonDataFormatConfig namespacesConfig() {
+    	XmlJsonDataFormatConfig config = new XmlJsonDataFormatConfig();
+    	List<XmlJsonDataFormatConfig.NamespacesPerElementMapping> namespaces = new ArrayList<XmlJsonDataFormatConfig.NamespacesPerElementMapping>();
+    	namespaces.add(new XmlJsonDataFormatConfig.NamespacesPerElementMapping("", "|ns1|http://camel.apache.org/test1||http://camel.apache.org/default|"));
+    	namespaces.add(new XmlJsonDataFormatConfig.NamespacesPerElementMapping("surname", "|ns2|http://camel.apache.org/personalData|ns3|http://camel.apache.org/personalData2|"));
+    	config.setNamespaceMappings(namespaces);
+    	return config;
+    }
+
+}
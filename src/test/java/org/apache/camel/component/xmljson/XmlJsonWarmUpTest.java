@@ -0,0 +1,232 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.xmljson;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.mock.MockEndpoint;
+import org.apache.camel.test.junit4.CamelTestSupport;
+import org.junit.Test;
+
+public class XmlJsonWarmUpTest extends CamelTestSupport {
+
+	private final AtomicInteger warmUps = new AtomicInteger();
+
+    @Test
+    public void testWarmUpAtRouteStart() throws Exception {
+    	assertEquals("The data format should have been warmed up once when the route started", 1, warmUps.get());
+
+        MockEndpoint mockJSON = getMockEndpoint("mock:json");
+        mockJSON.expectedMessageCount(1);
+        template.sendBody("direct:marshal", "<a><b>1</b></a>");
+        mockJSON.assertIsSatisfied();
+        assertEquals("{\"b\":\"1\"}", mockJSON.getExchanges().get(0).getIn().getBody(String.class));
+    }
+
+    @Test
+    public void testWarmUpGoesThroughExchanges() throws Exception {
+    	final Set<MarshalStrategyEnum> strategies = Collections.synchronizedSet(EnumSet.noneOf(MarshalStrategyEnum.class));
+    	final AtomicInteger unmarshals = new AtomicInteger();
+    	XmlJsonDataFormatConfig config = new XmlJsonDataFormatConfig();
+    	config.setWarmUp(true);
+    	config.setWarmUpIterations(2);
+    	config.setPooledBuffers(true);
+    	XmlJsonDataFormat format = new XmlJsonDataFormat(config) {
+    		@Override
+    		protected MarshalStrategyEnum selectMarshalStrategy(Exchange exchange, Object graph) {
+    			MarshalStrategyEnum strategy = super.selectMarshalStrategy(exchange, graph);
+    			strategies.add(strategy);
+    			return strategy;
+    		}
+
+    		@Override
+    		public Object unmarshal(Exchange exchange, InputStream stream) throws Exception {
+    			unmarshals.incrementAndGet();
+    			return super.unmarshal(exchange, stream);
+    		}
+    	};
+    	format.start();
+
+    	assertEquals("Every marshal strategy of the configuration should have been warmed up",
+    			EnumSet.of(MarshalStrategyEnum.STRING, MarshalStrategyEnum.BYTES, MarshalStrategyEnum.STREAM), strategies);
+    	assertEquals("Every marshalled sample should have been unmarshalled", 6, unmarshals.get());
+    	assertTrue("The pooled results should have been read back into the pool", format.getBufferPool().getPooledSegments() > 0);
+    }
+
+    @Test
+    public void testMissingWarmUpSampleFailsStart() throws Exception {
+    	XmlJsonDataFormatConfig config = new XmlJsonDataFormatConfig();
+    	config.setWarmUp(true);
+    	config.setWarmUpSamples(Arrays.asList("classpath:org/apache/camel/component/xmljson/doesNotExist.xml"));
+    	XmlJsonDataFormat format = new XmlJsonDataFormat(config);
+    	try {
+    		format.start();
+    		fail("Expected the start to fail because of the missing warm-up sample");
+    	} catch (IllegalArgumentException e) {
+    		// expected
+    	}
+    }
+
+    @Test
+    public void testSharedEngine() throws Exception {
+    	XmlJsonDataFormat format1 = new XmlJsonDataFormat(sharedConfig("shared"));
+    	XmlJsonDataFormat format2 = new XmlJsonDataFormat(sharedConfig("shared"));
+    	XmlJsonDataFormat other = new XmlJsonDataFormat(sharedConfig("other"));
+    	XmlJsonDataFormatConfig notSharedConfig = sharedConfig("shared");
+    	notSharedConfig.setSharedEngine(false);
+    	XmlJsonDataFormat notShared = new XmlJsonDataFormat(notSharedConfig);
+
+    	assertSame("Identical configurations must share the serializer", format1.getSerializer(), format2.getSerializer());
+    	assertNotSame("Different configurations must not share the serializer", format1.getSerializer(), other.getSerializer());
+    	assertNotSame("The serializer must only be shared when asked to", format1.getSerializer(), notShared.getSerializer());
+    	assertEquals("shared", format1.getSerializer().getRootName());
+    }
+
+    @Test
+    public void testFailedWarmUpIsNotRemembered() throws Exception {
+    	final AtomicInteger attempts = new AtomicInteger();
+    	XmlJsonDataFormatConfig config = warmUpConfig("failedWarmUp");
+    	XmlJsonDataFormat failing = new XmlJsonDataFormat(config) {
+    		@Override
+    		protected void warmUp() throws Exception {
+    			attempts.incrementAndGet();
+    			throw new IllegalStateException("Broken sample");
+    		}
+    	};
+    	try {
+    		failing.start();
+    		fail("Expected the warm-up to fail");
+    	} catch (IllegalStateException e) {
+    		// expected
+    	}
+
+    	// another data format sharing the engine must still warm it up
+    	countingFormat(warmUpConfig("failedWarmUp"), attempts).start();
+    	assertEquals("The engine should have been warmed up again after the failure", 2, attempts.get());
+    	// but once it succeeded, not anymore
+    	countingFormat(warmUpConfig("failedWarmUp"), attempts).start();
+    	assertEquals(2, attempts.get());
+    }
+
+    @Test
+    public void testSharedEngineWarmedUpPerSamplesAndResultType() throws Exception {
+    	AtomicInteger attempts = new AtomicInteger();
+    	countingFormat(warmUpConfig("perSamples"), attempts).start();
+
+    	XmlJsonDataFormatConfig otherSamples = warmUpConfig("perSamples");
+    	otherSamples.setWarmUpSamples(Arrays.asList("{\"x\": 1}"));
+    	XmlJsonDataFormat otherSamplesFormat = countingFormat(otherSamples, attempts);
+    	XmlJsonDataFormatConfig otherResultType = warmUpConfig("perSamples");
+    	otherResultType.setUnmarshalResultType("DOCUMENT");
+    	XmlJsonDataFormat otherResultTypeFormat = countingFormat(otherResultType, attempts);
+    	assertSame(otherSamplesFormat.getSerializer(), otherResultTypeFormat.getSerializer());
+
+    	otherSamplesFormat.start();
+    	otherResultTypeFormat.start();
+    	assertEquals("Each distinct set of samples and result type must be warmed up", 3, attempts.get());
+    }
+
+    @Test
+    public void testSystemPropertiesForUnconfiguredFormats() throws Exception {
+    	System.setProperty(XmlJsonDataFormat.SHARED_ENGINE_PROPERTY, "true");
+    	System.setProperty(XmlJsonDataFormat.WARM_UP_PROPERTY, "true");
+    	try {
+    		AtomicInteger attempts = new AtomicInteger();
+    		XmlJsonDataFormat format1 = countingFormat(null, attempts);
+    		XmlJsonDataFormat format2 = new XmlJsonDataFormat();
+    		assertSame("Unconfigured data formats must share the serializer", format1.getSerializer(), format2.getSerializer());
+    		assertNotSame("json-lib's defaults differ from an empty configuration", format1.getSerializer(),
+    				new XmlJsonDataFormat(new XmlJsonDataFormatConfig()).getSerializer());
+    		format1.start();
+    		assertEquals("The warm-up should have been enabled by the system property", 1, attempts.get());
+    	} finally {
+    		System.clearProperty(XmlJsonDataFormat.SHARED_ENGINE_PROPERTY);
+    		System.clearProperty(XmlJsonDataFormat.WARM_UP_PROPERTY);
+    	}
+    }
+
+    private static XmlJsonDataFormatConfig warmUpConfig(String rootName) {
+    	XmlJsonDataFormatConfig config = sharedConfig(rootName);
+    	config.setWarmUp(true);
+    	config.setWarmUpIterations(2);
+    	return config;
+    }
+
+    private static XmlJsonDataFormat countingFormat(XmlJsonDataFormatConfig config, final AtomicInteger attempts) {
+    	if (config == null) {
+    		return new XmlJsonDataFormat() {
+    			@Override
+    			protected void warmUp() throws Exception {
+    				super.warmUp();
+    				attempts.incrementAndGet();
+    			}
+    		};
+    	}
+    	return new XmlJsonDataFormat(config) {
+    		@Override
+    		protected void warmUp() throws Exception {
+    			super.warmUp();
+    			attempts.incrementAndGet();
+    		}
+    	};
+    }
+
+    private static XmlJsonDataFormatConfig sharedConfig(String rootName) {
+    	XmlJsonDataFormatConfig config = new XmlJsonDataFormatConfig();
+    	config.setSharedEngine(true);
+    	config.setRootName(rootName);
+    	config.setTypeHints("YES");
+    	List<XmlJsonDataFormatConfig.NamespacesPerElementMapping> namespaces = new ArrayList<XmlJsonDataFormatConfig.NamespacesPerElementMapping>();
+    	namespaces.add(new XmlJsonDataFormatConfig.NamespacesPerElementMapping("", "|ns1|http://camel.apache.org/test1||http://camel.apache.org/default|"));
+    	config.setNamespaceMappings(namespaces);
+    	return config;
+    }
+
+    @Override
+    protected RouteBuilder createRouteBuilder() throws Exception {
+        return new RouteBuilder() {
+            @Override
+            public void configure() throws Exception {
+                XmlJsonDataFormatConfig config = new XmlJsonDataFormatConfig();
+                config.setWarmUp(true);
+                config.setWarmUpIterations(5);
+                config.setWarmUpSamples(Arrays.asList("classpath:org/apache/camel/component/xmljson/testMessage1.xml",
+                		"org/apache/camel/component/xmljson/testMessage1.json", "{\"a\": [1, 2, {\"b\": null}]}"));
+                XmlJsonDataFormat format = new XmlJsonDataFormat(config) {
+                	@Override
+                	protected void warmUp() throws Exception {
+                		super.warmUp();
+                		warmUps.incrementAndGet();
+                	}
+                };
+
+                from("direct:marshal").marshal(format).to("mock:json");
+                from("direct:unmarshal").unmarshal(format).to("mock:xml");
+            }
+        };
+    }
+
+}